@@ -0,0 +1,61 @@
+package lox.lox;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import lox.scanner.LoxScanner;
+import lox.scanner.Token;
+
+// Throughput of the stages before execution over the corpus of all workloads
+// scan also reports tokens per second (the `tokens` counter)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FrontEndBenchmark {
+
+    private String source;
+    private ArrayList<Token> tokens;
+    private ArrayList<Statement> statements;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            tokens = 0;
+        }
+    }
+
+    @Setup
+    public void setup(){
+        source = Workloads.corpus(20);
+        tokens = new LoxScanner(source).scanTokens();
+        statements = new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public ArrayList<Token> scan(Counters counters){
+        ArrayList<Token> scanned = new LoxScanner(source).scanTokens();
+        counters.tokens += scanned.size();
+        return scanned;
+    }
+
+    @Benchmark
+    public ArrayList<Statement> parse(){
+        return new Parser(tokens).parse();
+    }
+
+    // Resolving fills in the same values again every time, so the tree is parsed once
+    @Benchmark
+    public ArrayList<Statement> resolve(){
+        new Resolver(statements).resolve();
+        return statements;
+    }
+}
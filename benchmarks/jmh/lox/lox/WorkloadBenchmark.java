@@ -0,0 +1,58 @@
+package lox.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import lox.error.Error;
+import lox.scanner.LoxScanner;
+
+// Time to run each workload to completion on each engine, starting from the resolved statements
+// (the --tree and --vm engines include building their nodes or bytecode, as a real run does)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WorkloadBenchmark {
+
+    @Param({"recursiveFib", "whileLoopFib", "arrayBuilding", "stringBuilding", "classInstantiation", "methodDispatch"})
+    public String workload;
+
+    @Param({"interpreter", "tree", "vm"})
+    public String engine;
+
+    private ArrayList<Statement> statements;
+
+    @Setup
+    public void setup(){
+        // The sample programs print, their output is not part of what is measured
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        statements = new Parser(new LoxScanner(Workloads.source(workload)).scanTokens()).parse();
+        new Resolver(statements).resolve();
+        if (Error.hadError) throw new IllegalStateException("Workload does not compile: " + workload);
+    }
+
+    @Benchmark
+    public Environment run(){
+        Environment globals = new Environment();
+        switch (engine){
+            case "tree":
+                new TreeInterpreter(statements, globals).interpret();
+                break;
+            case "vm":
+                new VM(globals).interpret(new Compiler(statements).compile());
+                break;
+            default:
+                new Interpreter(statements, globals).interpret();
+        }
+
+        if (Error.hadRuntimeError) throw new IllegalStateException("Workload failed: " + workload);
+        return globals;
+    }
+}
@@ -0,0 +1,100 @@
+package lox.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Lox programs the benchmarks run, by name
+final class Workloads {
+
+    static final String[] NAMES = {"recursiveFib", "whileLoopFib", "arrayBuilding", "stringBuilding", "classInstantiation", "methodDispatch"};
+
+    static String source(String name){
+        switch (name){
+            case "recursiveFib":
+                return sampleFile("fibonacciUsingFunctions.lox");
+            case "whileLoopFib":
+                return sampleFile("fibonacciUsingWhileLoop.lox");
+            case "arrayBuilding":
+                return """
+                    var pushed = [];
+                    for (var i = 0; i < 10000; i = i + 1) push(pushed, i);
+                    var concatenated = [];
+                    for (var i = 0; i < 10000; i = i + 1) concatenated = concatenated + [i, "x"];
+                    var sum = 0;
+                    for (var i = 0; i < len(pushed); i = i + 1) sum = sum + pushed[i];
+                    """;
+            case "stringBuilding":
+                return """
+                    var text = "";
+                    for (var i = 0; i < 10000; i = i + 1) text = text + "line " + i + ";";
+                    var length = len(text);
+                    """;
+            case "classInstantiation":
+                return """
+                    class Point {
+                        init(x, y){
+                            this.x = x;
+                            this.y = y;
+                        }
+                    }
+                    class ColoredPoint < Point {
+                        init(x, y, color){
+                            super.init(x, y);
+                            this.color = color;
+                        }
+                    }
+                    var last;
+                    for (var i = 0; i < 10000; i = i + 1){
+                        last = Point(i, i);
+                        last = ColoredPoint(i, i, "red");
+                    }
+                    """;
+            case "methodDispatch":
+                return """
+                    class Shape {
+                        area(){ return 0; }
+                        scaled(factor){ return this.area() * factor; }
+                    }
+                    class Square < Shape {
+                        init(side){ this.side = side; }
+                        area(){ return this.side * this.side; }
+                    }
+                    class Circle < Shape {
+                        init(radius){ this.radius = radius; }
+                        area(){ return 3.14 * this.radius * this.radius; }
+                    }
+                    var shapes = [Square(2), Circle(1), Square(3), Shape()];
+                    var total = 0;
+                    var next = 0;
+                    for (var i = 0; i < 20000; i = i + 1){
+                        total = total + shapes[next].scaled(2);
+                        next = next + 1;
+                        if (next == len(shapes)) next = 0;
+                    }
+                    """;
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    // All workloads one after another, repeated, as a larger input for the scanner, parser and resolver
+    static String corpus(int repeat){
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < repeat; i++){
+            for (String name : NAMES){
+                corpus.append(source(name)).append('\n');
+            }
+        }
+        return corpus.toString();
+    }
+
+    private static String sampleFile(String name){
+        try (InputStream in = Workloads.class.getResourceAsStream("/sampleFiles/" + name)){
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package lox.error;
 
+import lox.lox.Output;
 import lox.scanner.Token;
 
 public class Error{
@@ -31,11 +32,14 @@ public class Error{
 
 	public static void reportUsageError(){
 		hadError = true;
-        System.err.println("Usage: jlox\nUsage: jlox loxFile.lox");
+        // Without a file the prompt starts
+        System.err.println("Usage: jlox [--vm | --tree] [--line-flush] [--flush-interval=<ms>] [--buffer-size=<chars>] [--ast-cache] [--profile] [--stats] [--dump-ast] [loxFile.lox]");
 	}
   
 	public static void reportError(int line, String message){
 		hadError = true;
+		// Keep the error after the output printed before it
+		Output.flush();
 		System.err.println(String.format("Line [%d] : %s", line, message));
 	}
 
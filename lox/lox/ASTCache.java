@@ -0,0 +1,83 @@
+package lox.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Resolved statements of a script, cached next to it (script.lox -> script.lox.astc) so later runs skip scanning, parsing and resolving
+// The cache is keyed by the SHA-256 of the source, a cache written for other contents or for another AST layout is ignored and rewritten
+final class ASTCache {
+
+    private static final int MAGIC = 0x4c4f5841;
+    // Bump when the Optimizer or the Resolver produce a different tree without the layout of the AST classes changing
+    private static final int VERSION = 2;
+
+    private final Path cacheFile;
+    private final byte[] sourceHash;
+
+    ASTCache(Path source) throws IOException{
+        this.cacheFile = source.resolveSibling(source.getFileName() + ".astc");
+        this.sourceHash = hash(source);
+    }
+
+    // The cached statements, null if there is no valid cache for the source
+    ArrayList<Statement> load(){
+        if (!Files.isRegularFile(cacheFile)) return null;
+
+        try (ASTReader in = new ASTReader(new BufferedInputStream(Files.newInputStream(cacheFile)))){
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (in.readInt() != Expression.LAYOUT || in.readInt() != Statement.LAYOUT) return null;
+
+            byte[] hash = new byte[sourceHash.length];
+            in.readRaw(hash);
+            if (!Arrays.equals(hash, sourceHash)) return null;
+
+            return in.readStatements();
+        } catch (IOException | RuntimeException e){
+            // Unreadable or corrupt cache, the source is parsed instead
+            return null;
+        }
+    }
+
+    // Written to a temporary file first, so a run started meanwhile never reads half a cache
+    // The cache is only an optimization: failing to write it (e.g. a read-only directory) is not an error
+    void store(ArrayList<Statement> statements){
+        Path temporary = null;
+        try {
+            temporary = cacheFile.resolveSibling(cacheFile.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            try (ASTWriter out = new ASTWriter(new BufferedOutputStream(Files.newOutputStream(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)))){
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(Expression.LAYOUT);
+                out.writeInt(Statement.LAYOUT);
+                out.writeRaw(sourceHash);
+                out.writeStatements(statements);
+            }
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            try {
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored){}
+        }
+    }
+
+    private static byte[] hash(Path source) throws IOException{
+        try (FileChannel channel = FileChannel.open(source)){
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e){
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
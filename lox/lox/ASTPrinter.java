@@ -0,0 +1,209 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+import lox.scanner.Token;
+
+// Prints the statements as parenthesized prefix expressions, one statement per line and nested statements indented (--dump-ast)
+// e.g. `(var x (+ 1 y))`, `(while (< i 10)` followed by its body
+class ASTPrinter implements ExpressionVisitor<String>, StatementVisitor<Void>{
+
+    private static final String INDENT = "  ";
+
+    private final StringBuilder lines = new StringBuilder();
+    private int depth = 0;
+
+    String print(ArrayList<Statement> statements){
+        for (Statement statement : statements){
+            print(statement);
+        }
+        return lines.toString();
+    }
+
+    private void print(Statement statement){
+        statement.accept(this);
+    }
+
+    private String print(Expression expression){
+        return expression.accept(this);
+    }
+
+    private void line(String text){
+        lines.append(INDENT.repeat(depth)).append(text).append('\n');
+    }
+
+    // Opens a statement whose nested statements follow on their own lines
+    private void nested(String header, Statement... statements){
+        line("(" + header);
+        depth++;
+        for (Statement statement : statements){
+            if (statement != null) print(statement);
+        }
+        depth--;
+        // Closed at the end of its last line
+        lines.setLength(lines.length() - 1);
+        lines.append(")\n");
+    }
+
+    private String parenthesize(String name, Object... parts){
+        StringBuilder text = new StringBuilder("(").append(name);
+        for (Object part : parts){
+            text.append(' ').append((part instanceof Expression) ? print((Expression) part) : part);
+        }
+        return text.append(')').toString();
+    }
+
+    private static String names(ArrayList<Token> tokens){
+        StringBuilder text = new StringBuilder("(");
+        for (int i=0; i < tokens.size(); i++){
+            if (i > 0) text.append(' ');
+            text.append(tokens.get(i).lexeme);
+        }
+        return text.append(')').toString();
+    }
+
+    // Visitor methods for statement
+
+    @Override
+    public Void visitExpressionStatement(ExpressionStatement stmt) {
+        line(print(stmt.expression));
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStatement(PrintStatement stmt) {
+        line(parenthesize("print", stmt.expression));
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecStatement(VarDecStatement stmt) {
+        if (stmt.initializer == null) line(parenthesize("var", stmt.name.lexeme));
+        else line(parenthesize("var", stmt.name.lexeme, stmt.initializer));
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStatement(BlockStatement stmt) {
+        nested("block", stmt.statements.toArray(new Statement[0]));
+        return null;
+    }
+
+    @Override
+    public Void visitIfElseStatement(IfElseStatement stmt) {
+        nested("if " + print(stmt.expr), stmt.ifStatement, stmt.elseStatement);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(WhileStatement stmt) {
+        nested("while " + print(stmt.expr), stmt.statement);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStatement(FunctionStatement stmt) {
+        String kind = (stmt.type == FuncType.STATIC) ? "static fun" : "fun";
+        nested(kind + " " + stmt.name.lexeme + " " + names(stmt.parameters), ((BlockStatement) stmt.body).statements.toArray(new Statement[0]));
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(ReturnStatement stmt) {
+        if (stmt.returnValue == null) line("(return)");
+        else line(parenthesize("return", stmt.returnValue));
+        return null;
+    }
+
+    @Override
+    public Void visitClassStatement(ClassStatement stmt) {
+        String header = "class " + stmt.name.lexeme;
+        if (stmt.superclass != null) header += " < " + stmt.superclass.name.lexeme;
+
+        ArrayList<Statement> methods = new ArrayList<>(stmt.methods);
+        methods.addAll(stmt.staticMethods);
+        nested(header, methods.toArray(new Statement[0]));
+        return null;
+    }
+
+    // Visitor methods for expression
+
+    @Override
+    public String visitBinaryExpression(BinaryExpression expr) {
+        return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+    }
+
+    @Override
+    public String visitUnaryExpression(UnaryExpression expr) {
+        return parenthesize(expr.operator.lexeme, expr.expression);
+    }
+
+    @Override
+    public String visitGroupingExpression(GroupingExpression expr) {
+        return parenthesize("group", expr.expression);
+    }
+
+    @Override
+    public String visitLiteralExpression(LiteralExpression expr) {
+        if (expr.value instanceof String) return "\"" + expr.value + "\"";
+        return Interpreter.stringify(expr.value);
+    }
+
+    @Override
+    public String visitVariableExpression(VariableExpression expr) {
+        return expr.name.lexeme;
+    }
+
+    @Override
+    public String visitAssignmentExpression(AssignmentExpression expr) {
+        return parenthesize("=", expr.name.lexeme, expr.value);
+    }
+
+    @Override
+    public String visitLogicalExpression(LogicalExpression expr) {
+        return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+    }
+
+    @Override
+    public String visitCallExpression(CallExpression expr) {
+        ArrayList<Object> parts = new ArrayList<>();
+        parts.add(expr.callee);
+        parts.addAll(expr.arguments);
+        return parenthesize("call", parts.toArray());
+    }
+
+    @Override
+    public String visitGetExpression(GetExpression expr) {
+        return parenthesize(".", expr.object, expr.name.lexeme);
+    }
+
+    @Override
+    public String visitSetExpression(SetExpression expr) {
+        return parenthesize(".=", expr.object, expr.name.lexeme, expr.value);
+    }
+
+    @Override
+    public String visitThisExpression(ThisExpression expr) {
+        return "this";
+    }
+
+    @Override
+    public String visitSuperExpression(SuperExpression expr) {
+        return parenthesize("super", expr.method.lexeme);
+    }
+
+    @Override
+    public String visitArrayExpression(ArrayExpression expr) {
+        return parenthesize("array", expr.elements.toArray());
+    }
+
+    @Override
+    public String visitArrayElementExpression(ArrayElementExpression expr) {
+        return parenthesize("[]", expr.arrayExpression, expr.index);
+    }
+
+    @Override
+    public String visitArrayElementAssignmentExpression(ArrayElementAssignmentExpression expr) {
+        return parenthesize("[]=", expr.arrayExpression, expr.index, expr.value);
+    }
+}
@@ -0,0 +1,150 @@
+package lox.lox;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import lox.scanner.Token;
+import lox.scanner.TokenType;
+
+// Reads the tree an ASTWriter wrote, see ASTWriter for the format
+// Strings are interned like the scanner's lexemes, so names keep being canonical
+final class ASTReader implements AutoCloseable {
+
+    private static final TokenType[] tokenTypes = TokenType.values();
+    private static final FuncType[] funcTypes = FuncType.values();
+
+    private final DataInputStream in;
+    private final ArrayList<String> strings = new ArrayList<>();
+    private int line = 0;
+
+    ASTReader(InputStream in){
+        this.in = new DataInputStream(in);
+    }
+
+    int readTag() throws IOException{
+        return in.readByte();
+    }
+
+    int readInt() throws IOException{
+        int bits = 0;
+        int shift = 0;
+        int value;
+        do {
+            value = in.readUnsignedByte();
+            bits |= (value & 0x7f) << shift;
+            shift += 7;
+        } while ((value & 0x80) != 0);
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    int[] readInts() throws IOException{
+        int length = readInt();
+        if (length == ASTWriter.NULL) return null;
+
+        int[] values = new int[length];
+        for (int i=0; i < length; i++){
+            values[i] = readInt();
+        }
+        return values;
+    }
+
+    boolean readBoolean() throws IOException{
+        return in.readBoolean();
+    }
+
+    String readString() throws IOException{
+        int index = readInt();
+        if (index < strings.size()) return strings.get(index);
+
+        byte[] bytes = new byte[readInt()];
+        in.readFully(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8).intern();
+        strings.add(value);
+        return value;
+    }
+
+    Expression readExpression() throws IOException{
+        int tag = readTag();
+        if (tag == ASTWriter.NULL) return null;
+        return Expression.read(this, tag);
+    }
+
+    Statement readStatement() throws IOException{
+        int tag = readTag();
+        if (tag == ASTWriter.NULL) return null;
+        return Statement.read(this, tag);
+    }
+
+    ArrayList<Expression> readExpressions() throws IOException{
+        int size = readInt();
+        ArrayList<Expression> expressions = new ArrayList<>(size);
+        for (int i=0; i < size; i++){
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    // Also reads the lists of FunctionStatements of a class
+    @SuppressWarnings("unchecked")
+    <T extends Statement> ArrayList<T> readStatements() throws IOException{
+        int size = readInt();
+        ArrayList<T> statements = new ArrayList<>(size);
+        for (int i=0; i < size; i++){
+            statements.add((T) readStatement());
+        }
+        return statements;
+    }
+
+    Token readToken() throws IOException{
+        int tag = readTag();
+        if (tag == ASTWriter.NULL) return null;
+
+        TokenType type = tokenTypes[tag];
+        String lexeme = readString();
+        Object value = readLiteral();
+        line += readInt();
+        return new Token(type, lexeme, value, line);
+    }
+
+    ArrayList<Token> readTokens() throws IOException{
+        int size = readInt();
+        ArrayList<Token> tokens = new ArrayList<>(size);
+        for (int i=0; i < size; i++){
+            tokens.add(readToken());
+        }
+        return tokens;
+    }
+
+    Object readLiteral() throws IOException{
+        switch (readTag()){
+            case ASTWriter.NULL: return null;
+            case 0: return false;
+            case 1: return true;
+            case 2: return in.readDouble();
+            case 3: return readString();
+            default: throw new IOException("Unknown literal tag");
+        }
+    }
+
+    FuncType readFuncType() throws IOException{
+        return funcTypes[readTag()];
+    }
+
+    InlineCache readInlineCache() throws IOException{
+        int tag = readTag();
+        if (tag == ASTWriter.NULL) return null;
+        return (tag == 1) ? InlineCache.forOwnMethod(readString()) : InlineCache.forMethod(readString());
+    }
+
+    void readRaw(byte[] bytes) throws IOException{
+        in.readFully(bytes);
+    }
+
+    @Override
+    public void close() throws IOException{
+        in.close();
+    }
+}
@@ -0,0 +1,245 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+// Base of the Optimizer passes: rebuilds the Statement/Expression tree bottom up
+// A visit returns the node itself when nothing below it changed and a new node otherwise, so untouched subtrees are shared
+// Visiting a statement may return null to remove it
+// The Resolver runs again over the result, new nodes are built without any of its annotations
+abstract class ASTTransformer implements ExpressionVisitor<Expression>, StatementVisitor<Statement>{
+
+    ArrayList<Statement> transform(ArrayList<Statement> statements){
+        ArrayList<Statement> result = null;
+        for (int i=0; i < statements.size(); i++){
+            Statement statement = statements.get(i);
+            Statement transformed = transform(statement);
+
+            if (transformed != statement && result == null) result = new ArrayList<>(statements.subList(0, i));
+            if (result != null && transformed != null) result.add(transformed);
+        }
+        return (result == null) ? statements : result;
+    }
+
+    Statement transform(Statement statement){
+        return statement.accept(this);
+    }
+
+    Expression transform(Expression expression){
+        if (expression == null) return null;
+        return expression.accept(this);
+    }
+
+    private ArrayList<Expression> transformAll(ArrayList<Expression> expressions){
+        ArrayList<Expression> result = null;
+        for (int i=0; i < expressions.size(); i++){
+            Expression expression = expressions.get(i);
+            Expression transformed = transform(expression);
+
+            if (transformed != expression && result == null) result = new ArrayList<>(expressions.subList(0, i));
+            if (result != null) result.add(transformed);
+        }
+        return (result == null) ? expressions : result;
+    }
+
+    // Where the grammar needs a statement (bodies and branches), a removed one becomes an empty block
+    private Statement transformRequired(Statement statement){
+        Statement transformed = transform(statement);
+        return (transformed == null) ? new BlockStatement(new ArrayList<>()) : transformed;
+    }
+
+    // Visitor methods for statement
+
+    @Override
+    public Statement visitExpressionStatement(ExpressionStatement stmt) {
+        Expression expression = transform(stmt.expression);
+        if (expression == stmt.expression) return stmt;
+        return new ExpressionStatement(expression);
+    }
+
+    @Override
+    public Statement visitPrintStatement(PrintStatement stmt) {
+        Expression expression = transform(stmt.expression);
+        if (expression == stmt.expression) return stmt;
+        return new PrintStatement(expression);
+    }
+
+    @Override
+    public Statement visitVarDecStatement(VarDecStatement stmt) {
+        Expression initializer = transform(stmt.initializer);
+        if (initializer == stmt.initializer) return stmt;
+        return new VarDecStatement(stmt.name, initializer);
+    }
+
+    @Override
+    public Statement visitBlockStatement(BlockStatement stmt) {
+        ArrayList<Statement> statements = transform(stmt.statements);
+        if (statements == stmt.statements) return stmt;
+        return new BlockStatement(statements);
+    }
+
+    @Override
+    public Statement visitIfElseStatement(IfElseStatement stmt) {
+        Expression expr = transform(stmt.expr);
+        Statement ifStatement = transformRequired(stmt.ifStatement);
+        Statement elseStatement = (stmt.elseStatement == null) ? null : transform(stmt.elseStatement);
+
+        if (expr == stmt.expr && ifStatement == stmt.ifStatement && elseStatement == stmt.elseStatement) return stmt;
+        return new IfElseStatement(expr, ifStatement, elseStatement);
+    }
+
+    @Override
+    public Statement visitWhileStatement(WhileStatement stmt) {
+        Expression expr = transform(stmt.expr);
+        Statement statement = transformRequired(stmt.statement);
+
+        if (expr == stmt.expr && statement == stmt.statement) return stmt;
+        return new WhileStatement(expr, statement);
+    }
+
+    @Override
+    public Statement visitFunctionStatement(FunctionStatement stmt) {
+        Statement body = transformRequired(stmt.body);
+        if (body == stmt.body) return stmt;
+        return new FunctionStatement(stmt.name, stmt.parameters, body, stmt.type);
+    }
+
+    @Override
+    public Statement visitReturnStatement(ReturnStatement stmt) {
+        Expression returnValue = transform(stmt.returnValue);
+        if (returnValue == stmt.returnValue) return stmt;
+        return new ReturnStatement(stmt.keyword, returnValue);
+    }
+
+    @Override
+    public Statement visitClassStatement(ClassStatement stmt) {
+        ArrayList<FunctionStatement> methods = transformMethods(stmt.methods);
+        ArrayList<FunctionStatement> staticMethods = transformMethods(stmt.staticMethods);
+
+        if (methods == stmt.methods && staticMethods == stmt.staticMethods) return stmt;
+        return new ClassStatement(stmt.name, stmt.superclass, methods, staticMethods);
+    }
+
+    private ArrayList<FunctionStatement> transformMethods(ArrayList<FunctionStatement> methods){
+        ArrayList<FunctionStatement> result = null;
+        for (int i=0; i < methods.size(); i++){
+            FunctionStatement method = methods.get(i);
+            FunctionStatement transformed = (FunctionStatement) visitFunctionStatement(method);
+
+            if (transformed != method && result == null) result = new ArrayList<>(methods.subList(0, i));
+            if (result != null) result.add(transformed);
+        }
+        return (result == null) ? methods : result;
+    }
+
+    // Visitor methods for expression
+
+    @Override
+    public Expression visitBinaryExpression(BinaryExpression expr) {
+        Expression left = transform(expr.left);
+        Expression right = transform(expr.right);
+
+        if (left == expr.left && right == expr.right) return expr;
+        return new BinaryExpression(left, expr.operator, right);
+    }
+
+    @Override
+    public Expression visitUnaryExpression(UnaryExpression expr) {
+        Expression expression = transform(expr.expression);
+        if (expression == expr.expression) return expr;
+        return new UnaryExpression(expr.operator, expression);
+    }
+
+    @Override
+    public Expression visitGroupingExpression(GroupingExpression expr) {
+        Expression expression = transform(expr.expression);
+        if (expression == expr.expression) return expr;
+        return new GroupingExpression(expression);
+    }
+
+    @Override
+    public Expression visitLiteralExpression(LiteralExpression expr) {
+        return expr;
+    }
+
+    @Override
+    public Expression visitVariableExpression(VariableExpression expr) {
+        return expr;
+    }
+
+    @Override
+    public Expression visitAssignmentExpression(AssignmentExpression expr) {
+        Expression value = transform(expr.value);
+        if (value == expr.value) return expr;
+        return new AssignmentExpression(expr.name, value);
+    }
+
+    @Override
+    public Expression visitLogicalExpression(LogicalExpression expr) {
+        Expression left = transform(expr.left);
+        Expression right = transform(expr.right);
+
+        if (left == expr.left && right == expr.right) return expr;
+        return new LogicalExpression(left, expr.operator, right);
+    }
+
+    @Override
+    public Expression visitCallExpression(CallExpression expr) {
+        Expression callee = transform(expr.callee);
+        ArrayList<Expression> arguments = transformAll(expr.arguments);
+
+        if (callee == expr.callee && arguments == expr.arguments) return expr;
+        return new CallExpression(callee, expr.closingParen, arguments);
+    }
+
+    @Override
+    public Expression visitGetExpression(GetExpression expr) {
+        Expression object = transform(expr.object);
+        if (object == expr.object) return expr;
+        return new GetExpression(object, expr.name);
+    }
+
+    @Override
+    public Expression visitSetExpression(SetExpression expr) {
+        Expression object = transform(expr.object);
+        Expression value = transform(expr.value);
+
+        if (object == expr.object && value == expr.value) return expr;
+        return new SetExpression(object, expr.name, value);
+    }
+
+    @Override
+    public Expression visitThisExpression(ThisExpression expr) {
+        return expr;
+    }
+
+    @Override
+    public Expression visitSuperExpression(SuperExpression expr) {
+        return expr;
+    }
+
+    @Override
+    public Expression visitArrayExpression(ArrayExpression expr) {
+        ArrayList<Expression> elements = transformAll(expr.elements);
+        if (elements == expr.elements) return expr;
+        return new ArrayExpression(elements);
+    }
+
+    @Override
+    public Expression visitArrayElementExpression(ArrayElementExpression expr) {
+        Expression arrayExpression = transform(expr.arrayExpression);
+        Expression index = transform(expr.index);
+
+        if (arrayExpression == expr.arrayExpression && index == expr.index) return expr;
+        return new ArrayElementExpression(expr.leftBracket, arrayExpression, index);
+    }
+
+    @Override
+    public Expression visitArrayElementAssignmentExpression(ArrayElementAssignmentExpression expr) {
+        Expression arrayExpression = transform(expr.arrayExpression);
+        Expression index = transform(expr.index);
+        Expression value = transform(expr.value);
+
+        if (arrayExpression == expr.arrayExpression && index == expr.index && value == expr.value) return expr;
+        return new ArrayElementAssignmentExpression(expr.leftBracket, arrayExpression, index, value);
+    }
+}
@@ -0,0 +1,154 @@
+package lox.lox;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import lox.scanner.Token;
+
+// Compact binary form of a resolved Statement tree, written through the write methods generated into Statement.java and Expression.java
+// Every node starts with the tag of its class (NULL for a missing node), ints are variable length
+// and every distinct String is stored once and referred to by index afterwards
+final class ASTWriter implements AutoCloseable {
+
+    static final int NULL = -1;
+
+    private final DataOutputStream out;
+    private final HashMap<String, Integer> strings = new HashMap<>();
+    // Token lines are stored relative to the line of the previous token
+    private int line = 0;
+
+    ASTWriter(OutputStream out){
+        this.out = new DataOutputStream(out);
+    }
+
+    void writeTag(int tag) throws IOException{
+        out.writeByte(tag);
+    }
+
+    // Zigzag encoded so small negative values (depth -1) take a single byte as well
+    void writeInt(int value) throws IOException{
+        int bits = (value << 1) ^ (value >> 31);
+        while ((bits & ~0x7f) != 0){
+            out.writeByte((bits & 0x7f) | 0x80);
+            bits >>>= 7;
+        }
+        out.writeByte(bits);
+    }
+
+    // null is written as length -1
+    void writeInts(int[] values) throws IOException{
+        if (values == null){
+            writeInt(NULL);
+            return;
+        }
+        writeInt(values.length);
+        for (int value : values){
+            writeInt(value);
+        }
+    }
+
+    void writeBoolean(boolean value) throws IOException{
+        out.writeBoolean(value);
+    }
+
+    void writeString(String value) throws IOException{
+        Integer index = strings.get(value);
+        if (index != null){
+            writeInt(index);
+            return;
+        }
+
+        writeInt(strings.size());
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    void writeExpression(Expression expression) throws IOException{
+        if (expression == null) writeTag(NULL);
+        else expression.write(this);
+    }
+
+    void writeStatement(Statement statement) throws IOException{
+        if (statement == null) writeTag(NULL);
+        else statement.write(this);
+    }
+
+    void writeExpressions(ArrayList<Expression> expressions) throws IOException{
+        writeInt(expressions.size());
+        for (Expression expression : expressions){
+            writeExpression(expression);
+        }
+    }
+
+    void writeStatements(ArrayList<? extends Statement> statements) throws IOException{
+        writeInt(statements.size());
+        for (Statement statement : statements){
+            writeStatement(statement);
+        }
+    }
+
+    void writeToken(Token token) throws IOException{
+        if (token == null){
+            writeTag(NULL);
+            return;
+        }
+
+        writeTag(token.type.ordinal());
+        writeString(token.lexeme);
+        writeLiteral(token.value);
+        writeInt(token.line - line);
+        line = token.line;
+    }
+
+    void writeTokens(ArrayList<Token> tokens) throws IOException{
+        writeInt(tokens.size());
+        for (Token token : tokens){
+            writeToken(token);
+        }
+    }
+
+    // nil, booleans, numbers and strings
+    void writeLiteral(Object value) throws IOException{
+        if (value == null){
+            writeTag(NULL);
+        } else if (value instanceof Boolean){
+            writeTag((boolean) value ? 1 : 0);
+        } else if (value instanceof Double){
+            writeTag(2);
+            out.writeDouble((double) value);
+        } else {
+            writeTag(3);
+            writeString((String) value);
+        }
+    }
+
+    void writeFuncType(FuncType type) throws IOException{
+        writeTag(type.ordinal());
+    }
+
+    // Only what the cache is for is stored, the entries are filled in again at runtime
+    void writeInlineCache(InlineCache cache) throws IOException{
+        if (cache == null){
+            writeTag(NULL);
+            return;
+        }
+
+        writeTag(cache.ownMethodsOnly ? 1 : 0);
+        writeString(cache.name);
+    }
+
+    void writeRaw(byte[] bytes) throws IOException{
+        out.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException{
+        out.close();
+    }
+}
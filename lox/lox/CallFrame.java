@@ -0,0 +1,14 @@
+package lox.lox;
+
+// Activation record of a function running on the VM, reused between calls
+class CallFrame {
+    LoxFunction function;
+    // Instance a method runs on, what `init` returns
+    LoxInstance receiver;
+    Chunk chunk;
+    int ip;
+    // Environments holding "super" the frame's code has open, null when there are none
+    Environment environment;
+    // Stack height of the caller once the callee and arguments are popped, the frame's locals start there
+    int base;
+}
@@ -0,0 +1,79 @@
+package lox.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import lox.scanner.Token;
+
+// Bytecode of one function (or of the top level script) together with its constant pool
+class Chunk {
+
+    final String name;
+    byte[] code = new byte[64];
+    int count = 0;
+
+    // Token of the instruction every byte belongs to, only read when reporting runtime errors
+    Token[] tokens = new Token[64];
+
+    Object[] constants;
+    private final ArrayList<Object> constantList = new ArrayList<>();
+    private final HashMap<Object, Integer> literalConstants = new HashMap<>();
+
+    // Slots of the frame's locals, below its values on the stack
+    int localCount = 0;
+    // Most values the chunk ever has on the VM stack at once, on top of its locals
+    int maxStack = 0;
+    private int stackDepth = 0;
+
+    Chunk(String name){
+        this.name = name;
+    }
+
+    void write(byte value, Token token){
+        if (count == code.length){
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+        code[count] = value;
+        tokens[count] = token;
+        count++;
+    }
+
+    void writeShort(int value, Token token){
+        write((byte) ((value >> 8) & 0xff), token);
+        write((byte) (value & 0xff), token);
+    }
+
+    void patchShort(int offset, int value){
+        code[offset] = (byte) ((value >> 8) & 0xff);
+        code[offset + 1] = (byte) (value & 0xff);
+    }
+
+    // Numbers and strings are shared, everything else gets its own entry
+    int addConstant(Object value){
+        boolean isLiteral = value instanceof Double || value instanceof String;
+        if (isLiteral && literalConstants.containsKey(value)) return literalConstants.get(value);
+
+        constantList.add(value);
+        int index = constantList.size() - 1;
+        if (isLiteral) literalConstants.put(value, index);
+        return index;
+    }
+
+    int constantCount(){
+        return constantList.size();
+    }
+
+    void trackStack(int stackEffect){
+        stackDepth += stackEffect;
+        if (stackDepth > maxStack) maxStack = stackDepth;
+    }
+
+    // Called once the compiler is done with the chunk
+    void finish(){
+        code = Arrays.copyOf(code, count);
+        tokens = Arrays.copyOf(tokens, count);
+        constants = constantList.toArray();
+    }
+}
@@ -0,0 +1,564 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+import lox.error.Error;
+import lox.scanner.Token;
+import lox.scanner.TokenType;
+
+// Compiles the resolved Statement/Expression tree into bytecode for the VM
+public class Compiler implements ExpressionVisitor<Void>, StatementVisitor<Void>{
+
+    // Array literals are built in batches so the stack never holds too many elements at once
+    private static final int ARRAY_BATCH_SIZE = 256;
+
+    private final ArrayList<Statement> statements;
+    private Chunk chunk;
+    private FuncType currentFuncType = FuncType.NONE;
+    // Environments holding "super" open at this point of the chunk, the only environments of a frame (see VM.capture)
+    private int environmentDepth = 0;
+    private Token lastToken = null;
+
+    Compiler(ArrayList<Statement> statements){
+        this.statements = statements;
+    }
+
+    Chunk compile(){
+        chunk = new Chunk("script");
+        for (Statement statement : statements){
+            compile(statement);
+        }
+        emit(OpCode.NIL, null, 1);
+        emit(OpCode.RETURN, null, -1);
+
+        chunk.finish();
+        return chunk;
+    }
+
+    private void compile(Statement statement){
+        statement.accept(this);
+    }
+
+    private void compile(Expression expression){
+        expression.accept(this);
+    }
+
+    // Visitor methods for statement
+
+    @Override
+    public Void visitExpressionStatement(ExpressionStatement stmt) {
+        if (stmt.expression instanceof AssignmentExpression && isPlainVariable((AssignmentExpression) stmt.expression)){
+            // The assigned value is not needed afterwards
+            AssignmentExpression expr = (AssignmentExpression) stmt.expression;
+            compile(expr.value);
+
+            if (expr.depth < 0) emitWithConstant(OpCode.SET_GLOBAL_POP, expr.name, expr.name, -1);
+            else emitLocal(OpCode.SET_LOCAL_POP, expr.slot, expr.name, -1);
+            return null;
+        }
+
+        compile(stmt.expression);
+        emit(OpCode.POP, null, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStatement(PrintStatement stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT, null, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecStatement(VarDecStatement stmt) {
+        if (stmt.initializer != null) compile(stmt.initializer);
+        else emit(OpCode.NIL, null, 1);
+
+        // Each time the declaration runs, closures capturing the variable get a new box
+        if (stmt.boxed) emit(OpCode.BOX, stmt.name, 0);
+        emitDefine(stmt.slot, stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStatement(BlockStatement stmt) {
+        // Only blocks of the script have an environment of their own, their slots are the script frame's locals
+        if (stmt.ownEnvironment) chunk.localCount = Math.max(chunk.localCount, stmt.localCount);
+
+        for (Statement statement : stmt.statements){
+            compile(statement);
+        }
+
+        if (stmt.ownEnvironment){
+            emit(OpCode.CLEAR_LOCALS, null, 0);
+            chunk.writeShort(stmt.localCount, null);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfElseStatement(IfElseStatement stmt) {
+        int thenJump = compileCondition(stmt.expr);
+        compile(stmt.ifStatement);
+
+        if (stmt.elseStatement != null){
+            int elseJump = emitJump(OpCode.JUMP, 0);
+            patchJump(thenJump);
+            compile(stmt.elseStatement);
+            patchJump(elseJump);
+        } else {
+            patchJump(thenJump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(WhileStatement stmt) {
+        int loopStart = chunk.count;
+        if (Interpreter.isAlwaysTrue(stmt.expr)){
+            compile(stmt.statement);
+            emitLoop(loopStart);
+            return null;
+        }
+
+        int exitJump = compileCondition(stmt.expr);
+
+        compile(stmt.statement);
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStatement(FunctionStatement stmt) {
+        if (stmt.boxed) emitEmptyBox(stmt.slot, stmt.name);
+        emitClosure(stmt);
+
+        if (stmt.boxed) emitFillBox(stmt.slot, stmt.name);
+        else emitDefine(stmt.slot, stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(ReturnStatement stmt) {
+        if (currentFuncType == FuncType.NONE){
+            // Same as the interpreter: the value is evaluated before the error is raised
+            if (stmt.returnValue != null) compile(stmt.returnValue);
+            emitWithConstant(OpCode.RUNTIME_ERROR, "Return not allowed", stmt.keyword, 0);
+
+        } else if (currentFuncType == FuncType.INIT){
+            if (stmt.returnValue == null){
+                emit(OpCode.RETURN_INIT, stmt.keyword, 0);
+            } else {
+                compile(stmt.returnValue);
+                emit(OpCode.CHECK_INIT_RETURN, stmt.keyword, 0);
+                emit(OpCode.RETURN, stmt.keyword, -1);
+            }
+
+        } else {
+            if (stmt.tailCall) compileCall((CallExpression) stmt.returnValue, OpCode.TAIL_CALL);
+            else if (stmt.returnValue != null) compile(stmt.returnValue);
+            else emit(OpCode.NIL, stmt.keyword, 1);
+            emit(OpCode.RETURN, stmt.keyword, -1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitClassStatement(ClassStatement stmt) {
+        boolean hasSuperclass = stmt.superclass != null;
+        if (stmt.boxed) emitEmptyBox(stmt.slot, stmt.name);
+
+        if (hasSuperclass){
+            compile(stmt.superclass);
+            // Checks the superclass and opens the environment holding "super"
+            emit(OpCode.INHERIT, stmt.name, 0);
+            environmentDepth++;
+        }
+
+        emitWithConstant(OpCode.CLASS, stmt.name, stmt.name, hasSuperclass ? 0 : 1);
+        chunk.write((byte) (hasSuperclass ? 1 : 0), stmt.name);
+
+        for (FunctionStatement method : stmt.methods){
+            emitClosure(method);
+            emitWithConstant(OpCode.METHOD, method.name.lexeme, method.name, -1);
+        }
+
+        for (FunctionStatement method : stmt.staticMethods){
+            emitClosure(method);
+            emitWithConstant(OpCode.STATIC_METHOD, method.name.lexeme, method.name, -1);
+        }
+
+        if (hasSuperclass){
+            emit(OpCode.POP_ENV, null, 0);
+            environmentDepth--;
+        }
+
+        if (stmt.boxed) emitFillBox(stmt.slot, stmt.name);
+        else emitDefine(stmt.slot, stmt.name);
+        return null;
+    }
+
+    // Visitor methods for expression
+
+    @Override
+    public Void visitBinaryExpression(BinaryExpression expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case ADD:
+                emit(OpCode.ADD, expr.operator, -1); break;
+            case SUBTRACT:
+                emit(OpCode.SUBTRACT, expr.operator, -1); break;
+            case MULTIPLY:
+                emit(OpCode.MULTIPLY, expr.operator, -1); break;
+            case DIVIDE:
+                emit(OpCode.DIVIDE, expr.operator, -1); break;
+            case LT:
+                emit(OpCode.LT, expr.operator, -1); break;
+            case GT:
+                emit(OpCode.GT, expr.operator, -1); break;
+            case LEQ:
+                emit(OpCode.LEQ, expr.operator, -1); break;
+            case GEQ:
+                emit(OpCode.GEQ, expr.operator, -1); break;
+            case EQ:
+                emit(OpCode.EQ, expr.operator, -1); break;
+            case NEQ:
+                emit(OpCode.NEQ, expr.operator, -1); break;
+            // Unreachable
+            default:
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpression(UnaryExpression expr) {
+        compile(expr.expression);
+
+        switch (expr.operator.type) {
+            case SUBTRACT:
+                emit(OpCode.NEGATE, expr.operator, 0); break;
+            case NOT:
+                emit(OpCode.NOT, expr.operator, 0); break;
+            // Unreachable
+            default:
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpression(GroupingExpression expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpression(LiteralExpression expr) {
+        if (expr.value == null) emit(OpCode.NIL, null, 1);
+        else if (expr.value instanceof Boolean) emit(((Boolean) expr.value) ? OpCode.TRUE : OpCode.FALSE, null, 1);
+        else if (expr.value instanceof Double) emitWithConstant(OpCode.NUMBER, expr.value, null, 1);
+        else emitWithConstant(OpCode.CONSTANT, expr.value, null, 1);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpression(VariableExpression expr) {
+        if (expr.upvalue >= 0) emitUpvalue(OpCode.GET_UPVALUE, expr.upvalue, expr.name, 1);
+        else if (expr.depth < 0) emitWithConstant(OpCode.GET_GLOBAL, expr.name, expr.name, 1);
+        else if (expr.boxed) emitLocal(OpCode.GET_BOXED, expr.slot, expr.name, 1);
+        else emitLocal(OpCode.GET_LOCAL, expr.slot, expr.name, 1);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignmentExpression(AssignmentExpression expr) {
+        compile(expr.value);
+
+        if (expr.upvalue >= 0) emitUpvalue(OpCode.SET_UPVALUE, expr.upvalue, expr.name, 0);
+        else if (expr.depth < 0) emitWithConstant(OpCode.SET_GLOBAL, expr.name, expr.name, 0);
+        else if (expr.boxed) emitLocal(OpCode.SET_BOXED, expr.slot, expr.name, 0);
+        else emitLocal(OpCode.SET_LOCAL, expr.slot, expr.name, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpression(LogicalExpression expr) {
+        compile(expr.left);
+
+        byte jump = (expr.operator.type == TokenType.AND) ? OpCode.JUMP_IF_FALSE : OpCode.JUMP_IF_TRUE;
+        int endJump = emitJump(jump, 0);
+        emit(OpCode.POP, null, -1);
+        compile(expr.right);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpression(CallExpression expr) {
+        compileCall(expr, OpCode.CALL);
+        return null;
+    }
+
+    // CALL, or TAIL_CALL for a call in tail position
+    private void compileCall(CallExpression expr, byte call){
+        // Arguments are evaluated before the callee, like in the interpreter
+        for (Expression argument : expr.arguments){
+            compile(argument);
+        }
+
+        if (expr.callee instanceof GetExpression){
+            GetExpression method = (GetExpression) expr.callee;
+            compile(method.object);
+            emitWithConstant(OpCode.INVOKE, method.name, method.name, 0);
+            writeConstant(method.methodCache, method.name);
+        } else {
+            compile(expr.callee);
+        }
+
+        emit(call, expr.closingParen, -expr.arguments.size());
+        chunk.write((byte) expr.arguments.size(), expr.closingParen);
+        writeConstant(expr.initCache, expr.closingParen);
+    }
+
+    @Override
+    public Void visitGetExpression(GetExpression expr) {
+        compile(expr.object);
+        emitWithConstant(OpCode.GET_PROPERTY, expr.name, expr.name, 0);
+        writeConstant(expr.methodCache, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpression(SetExpression expr) {
+        compile(expr.object);
+        // The object has to be checked before the value can run any code
+        if (!isSafe(expr.value)) emitWithConstant(OpCode.CHECK_INSTANCE, expr.name, expr.name, 0);
+
+        compile(expr.value);
+        emitWithConstant(OpCode.SET_PROPERTY, expr.name, expr.name, -1);
+        writeConstant(expr.ownMethodCache, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpression(ThisExpression expr) {
+        if (expr.upvalue >= 0) emitUpvalue(OpCode.GET_UPVALUE, expr.upvalue, expr.keyword, 1);
+        else if (expr.boxed) emitLocal(OpCode.GET_BOXED, expr.slot, expr.keyword, 1);
+        else if (expr.depth >= 0) emitLocal(OpCode.GET_LOCAL, expr.slot, expr.keyword, 1);
+        else emitWithConstant(OpCode.RUNTIME_ERROR, "'this' keyword cannot be used outside of a class", expr.keyword, 1);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpression(SuperExpression expr) {
+        compile(expr.receiver);
+        emitWithConstant(OpCode.GET_SUPER, expr, expr.keyword, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayExpression(ArrayExpression expr) {
+        int compiled = 0;
+        do {
+            int batchSize = Math.min(ARRAY_BATCH_SIZE, expr.elements.size() - compiled);
+            for (int i = compiled; i < compiled + batchSize; i++){
+                compile(expr.elements.get(i));
+            }
+
+            if (compiled == 0) emit(OpCode.ARRAY, null, 1 - batchSize);
+            else emit(OpCode.ARRAY_EXTEND, null, -batchSize);
+            chunk.writeShort(batchSize, null);
+
+            compiled += batchSize;
+        } while (compiled < expr.elements.size());
+        return null;
+    }
+
+    @Override
+    public Void visitArrayElementExpression(ArrayElementExpression expr) {
+        compile(expr.arrayExpression);
+        if (!isSafe(expr.index)) emit(OpCode.CHECK_ARRAY_GET, expr.leftBracket, 0);
+
+        compile(expr.index);
+        emit(OpCode.GET_ELEMENT, expr.leftBracket, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayElementAssignmentExpression(ArrayElementAssignmentExpression expr) {
+        compile(expr.arrayExpression);
+        if (!isSafe(expr.index) || !isSafe(expr.value)) emit(OpCode.CHECK_ARRAY_SET, expr.leftBracket, 0);
+
+        compile(expr.index);
+        if (!isSafe(expr.value)) emit(OpCode.CHECK_ASSIGNMENT_INDEX, expr.leftBracket, 0);
+
+        compile(expr.value);
+        emit(OpCode.SET_ELEMENT, expr.leftBracket, -2);
+        return null;
+    }
+
+    // Helper methods
+
+    // Jumps when the condition is false, comparisons branch directly without producing a boolean
+    private int compileCondition(Expression condition){
+        if (condition instanceof BinaryExpression){
+            BinaryExpression expr = (BinaryExpression) condition;
+            byte jump = -1;
+            switch (expr.operator.type) {
+                case LT:
+                    jump = OpCode.JUMP_IF_NOT_LT; break;
+                case GT:
+                    jump = OpCode.JUMP_IF_NOT_GT; break;
+                case LEQ:
+                    jump = OpCode.JUMP_IF_NOT_LEQ; break;
+                case GEQ:
+                    jump = OpCode.JUMP_IF_NOT_GEQ; break;
+                default:
+                    break;
+            }
+
+            if (jump != -1){
+                compile(expr.left);
+                compile(expr.right);
+                emit(jump, expr.operator, -2);
+                chunk.writeShort(0xffff, expr.operator);
+                return chunk.count - 2;
+            }
+        }
+
+        compile(condition);
+        return emitJump(OpCode.POP_JUMP_IF_FALSE, -1);
+    }
+
+    // The function, with the variables it captures from the frame creating it
+    private void emitClosure(FunctionStatement stmt){
+        emitWithConstant(OpCode.CLOSURE, compileFunction(stmt), stmt.name, 1);
+
+        // The Resolver counts environments up to the function's own frame, which is on the stack
+        int[] captures = stmt.upvalues.clone();
+        for (int i=0; i < captures.length; i += 2){
+            if (captures[i] == environmentDepth) captures[i] = VM.CAPTURE_LOCAL;
+        }
+        writeConstant(captures, stmt.name);
+    }
+
+    private VMFunction compileFunction(FunctionStatement stmt){
+        Chunk enclosingChunk = chunk;
+        FuncType enclosingFuncType = currentFuncType;
+        int enclosingEnvironmentDepth = environmentDepth;
+        chunk = new Chunk(stmt.name.lexeme);
+        chunk.localCount = stmt.localCount;
+        currentFuncType = stmt.type;
+        environmentDepth = 0;
+
+        compile(stmt.body);
+        if (stmt.type == FuncType.INIT){
+            emit(OpCode.RETURN_INIT, null, 0);
+        } else {
+            emit(OpCode.NIL, null, 1);
+            emit(OpCode.RETURN, null, -1);
+        }
+        chunk.finish();
+
+        VMFunction function = new VMFunction(stmt, null, stmt.type, null, chunk, null);
+        chunk = enclosingChunk;
+        currentFuncType = enclosingFuncType;
+        environmentDepth = enclosingEnvironmentDepth;
+        return function;
+    }
+
+    // Expressions that can neither fail nor have side effects, so checks that
+    // the interpreter does before evaluating them can be left to the final instruction
+    private boolean isSafe(Expression expr){
+        if (expr instanceof LiteralExpression) return true;
+        if (expr instanceof VariableExpression) return ((VariableExpression) expr).depth >= 0 || ((VariableExpression) expr).upvalue >= 0;
+        if (expr instanceof ThisExpression) return ((ThisExpression) expr).depth >= 0 || ((ThisExpression) expr).upvalue >= 0;
+        if (expr instanceof GroupingExpression) return isSafe(((GroupingExpression) expr).expression);
+        return false;
+    }
+
+    private void emit(byte op, Token token, int stackEffect){
+        if (token != null) lastToken = token;
+        chunk.write(op, token);
+        chunk.trackStack(stackEffect);
+    }
+
+    private void emitWithConstant(byte op, Object constant, Token token, int stackEffect){
+        emit(op, token, stackEffect);
+        writeConstant(constant, token);
+    }
+
+    // Constant operand of the instruction just emitted
+    private void writeConstant(Object constant, Token token){
+        int index = chunk.addConstant(constant);
+        if (index > 0xffff) reportCompileError("Too many constants in one function");
+        chunk.writeShort(index, token);
+    }
+
+    // Declares the value on top of the stack, locals are stored straight into the slot the Resolver gave them
+    private void emitDefine(int slot, Token name){
+        if (slot < 0) emitWithConstant(OpCode.DEFINE, name.lexeme, name, -1);
+        else emitLocal(OpCode.SET_LOCAL_POP, slot, name, -1);
+    }
+
+    // A function or class capturing its own variable needs the box in place before its upvalues are captured
+    private void emitEmptyBox(int slot, Token name){
+        emit(OpCode.NIL, name, 1);
+        emit(OpCode.BOX, name, 0);
+        emitLocal(OpCode.SET_LOCAL_POP, slot, name, -1);
+    }
+
+    // Declares the value on top of the stack by storing it in the box emitEmptyBox created
+    private void emitFillBox(int slot, Token name){
+        emitLocal(OpCode.SET_BOXED, slot, name, 0);
+        emit(OpCode.POP, name, -1);
+    }
+
+    // Assignments to locals and globals that no closure captured, which have superinstructions for assignment statements
+    private static boolean isPlainVariable(AssignmentExpression expr){
+        return expr.upvalue < 0 && !expr.boxed;
+    }
+
+    private void emitUpvalue(byte op, int index, Token token, int stackEffect){
+        if (index > 0xffff) reportCompileError("Too many captured variables in one function");
+        emit(op, token, stackEffect);
+        chunk.writeShort(index, token);
+    }
+
+    // Locals of a chunk are all in its frame: every block inside a function uses the function's slots, and the script
+    // never nests a block with an environment of its own inside another, so the Resolver's depth is always 0
+    private void emitLocal(byte op, int slot, Token token, int stackEffect){
+        if (slot > 0xffff) reportCompileError("Too many local variables");
+        emit(op, token, stackEffect);
+        chunk.writeShort(slot, token);
+    }
+
+    // Returns the offset of the jump operand to be patched once the target is known
+    private int emitJump(byte op, int stackEffect){
+        emit(op, null, stackEffect);
+        chunk.writeShort(0xffff, null);
+        return chunk.count - 2;
+    }
+
+    private void patchJump(int operandOffset){
+        int jump = chunk.count - operandOffset - 2;
+        if (jump > 0xffff) reportCompileError("Too much code to jump over");
+        chunk.patchShort(operandOffset, jump);
+    }
+
+    private void emitLoop(int loopStart){
+        emit(OpCode.LOOP, null, 0);
+        int offset = chunk.count - loopStart + 2;
+        if (offset > 0xffff) reportCompileError("Loop body too large");
+        chunk.writeShort(offset, null);
+    }
+
+    private void reportCompileError(String message){
+        Error.reportError((lastToken == null) ? 0 : lastToken.line, message);
+    }
+}
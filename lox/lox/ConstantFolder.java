@@ -0,0 +1,86 @@
+package lox.lox;
+
+import lox.scanner.TokenType;
+
+// Optimizer pass evaluating operators whose operands are all literals: `1 + 2 * 3` becomes the literal 7
+// Operations that would fail (`1 - "a"`, division by zero) are left in place so they still fail at runtime, on their line
+// Groupings are dropped, the tree already encodes the order of evaluation they stood for
+class ConstantFolder extends ASTTransformer{
+
+    // Result of folding an operation that cannot be evaluated ahead of time
+    private static final Object NOT_CONSTANT = new Object();
+
+    @Override
+    public Expression visitBinaryExpression(BinaryExpression expr) {
+        BinaryExpression binary = (BinaryExpression) super.visitBinaryExpression(expr);
+        if (!(binary.left instanceof LiteralExpression && binary.right instanceof LiteralExpression)) return binary;
+
+        Object value = fold(binary.operator.type, ((LiteralExpression) binary.left).value, ((LiteralExpression) binary.right).value);
+        if (value == NOT_CONSTANT) return binary;
+        return new LiteralExpression(value);
+    }
+
+    @Override
+    public Expression visitUnaryExpression(UnaryExpression expr) {
+        UnaryExpression unary = (UnaryExpression) super.visitUnaryExpression(expr);
+        if (!(unary.expression instanceof LiteralExpression)) return unary;
+
+        Object value = ((LiteralExpression) unary.expression).value;
+        if (unary.operator.type == TokenType.NOT) return new LiteralExpression(!Interpreter.truthOrFalse(value));
+        if (value instanceof Double) return new LiteralExpression(-(double) value);
+        return unary;
+    }
+
+    @Override
+    public Expression visitGroupingExpression(GroupingExpression expr) {
+        return transform(expr.expression);
+    }
+
+    // `and` and `or` evaluate to one of their operands, a literal left one decides which
+    @Override
+    public Expression visitLogicalExpression(LogicalExpression expr) {
+        LogicalExpression logical = (LogicalExpression) super.visitLogicalExpression(expr);
+        if (!(logical.left instanceof LiteralExpression)) return logical;
+
+        boolean left = Interpreter.truthOrFalse(((LiteralExpression) logical.left).value);
+        if (logical.operator.type == TokenType.AND) return left ? logical.right : logical.left;
+        return left ? logical.left : logical.right;
+    }
+
+    // Same results as Interpreter.visitBinaryExpression for the values a literal can have (numbers, strings, booleans and nil)
+    private static Object fold(TokenType operator, Object left, Object right){
+        boolean numbers = left instanceof Double && right instanceof Double;
+
+        switch (operator) {
+            case ADD:
+                if (numbers) return (double) left + (double) right;
+                if (isConcatenable(left) && isConcatenable(right) && (left instanceof String || right instanceof String))
+                    return Interpreter.stringify(left) + Interpreter.stringify(right);
+                return NOT_CONSTANT;
+            case SUBTRACT:
+                return numbers ? (Object) ((double) left - (double) right) : NOT_CONSTANT;
+            case MULTIPLY:
+                return numbers ? (Object) ((double) left * (double) right) : NOT_CONSTANT;
+            case DIVIDE:
+                return (numbers && (double) right != 0) ? (Object) ((double) left / (double) right) : NOT_CONSTANT;
+            case LT:
+                return numbers ? (Object) ((double) left < (double) right) : NOT_CONSTANT;
+            case GT:
+                return numbers ? (Object) ((double) left > (double) right) : NOT_CONSTANT;
+            case LEQ:
+                return numbers ? (Object) ((double) left <= (double) right) : NOT_CONSTANT;
+            case GEQ:
+                return numbers ? (Object) ((double) left >= (double) right) : NOT_CONSTANT;
+            case EQ:
+                return Interpreter.isEqual(left, right);
+            case NEQ:
+                return Interpreter.isNotEqual(left, right);
+            default:
+                return NOT_CONSTANT;
+        }
+    }
+
+    private static boolean isConcatenable(Object value){
+        return value instanceof String || value instanceof Double;
+    }
+}
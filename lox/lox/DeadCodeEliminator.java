@@ -0,0 +1,45 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+// Optimizer pass removing code that can never run, meant to follow the ConstantFolder:
+// branches of an `if` on a literal that are not taken, `while` loops on a falsy literal,
+// expression statements that are only a literal and statements following a `return` in the same block
+// A loop on any other truthy literal gets `true` as its condition, which the engines run without evaluating it
+class DeadCodeEliminator extends ASTTransformer{
+
+    @Override
+    ArrayList<Statement> transform(ArrayList<Statement> statements){
+        ArrayList<Statement> result = super.transform(statements);
+
+        for (int i=0; i < result.size() - 1; i++){
+            if (result.get(i) instanceof ReturnStatement) return new ArrayList<>(result.subList(0, i + 1));
+        }
+        return result;
+    }
+
+    @Override
+    public Statement visitExpressionStatement(ExpressionStatement stmt) {
+        Statement statement = super.visitExpressionStatement(stmt);
+        if (((ExpressionStatement) statement).expression instanceof LiteralExpression) return null;
+        return statement;
+    }
+
+    @Override
+    public Statement visitIfElseStatement(IfElseStatement stmt) {
+        IfElseStatement ifElse = (IfElseStatement) super.visitIfElseStatement(stmt);
+        if (!(ifElse.expr instanceof LiteralExpression)) return ifElse;
+
+        if (Interpreter.truthOrFalse(((LiteralExpression) ifElse.expr).value)) return ifElse.ifStatement;
+        return ifElse.elseStatement;
+    }
+
+    @Override
+    public Statement visitWhileStatement(WhileStatement stmt) {
+        WhileStatement loop = (WhileStatement) super.visitWhileStatement(stmt);
+        if (!(loop.expr instanceof LiteralExpression) || Interpreter.isAlwaysTrue(loop.expr)) return loop;
+
+        if (!Interpreter.truthOrFalse(((LiteralExpression) loop.expr).value)) return null;
+        return new WhileStatement(new LiteralExpression(true), loop.statement);
+    }
+}
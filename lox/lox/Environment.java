@@ -8,62 +8,133 @@ import lox.error.Error;
 import lox.scanner.Token;
 
 public class Environment {
-    
+
+    private static final Upvalue[] NO_UPVALUES = new Upvalue[0];
+
     Environment superEnvironment = null;
-    private final HashMap<String, Object> environment = new HashMap<>();
+
+    // Only the global environment looks variables up by name,
+    // local scopes store their variables in the slots assigned by the Resolver
+    private final HashMap<String, Object> environment;
+    private final Object[] slots;
+    private int definedSlots = 0;
+
+    // Variables of enclosing functions captured by the function running in this environment
+    // The environment of a call does not link to the one the function was declared in, these are all it can reach outside of it
+    final Upvalue[] upvalues;
 
     // Init : Overloaded
 
+    // Global environment
     Environment(){
+        environment = new HashMap<>();
+        slots = null;
+        upvalues = NO_UPVALUES;
+        if (Stats.ENABLED) Stats.environments++;
     }
 
-    Environment(Environment superEnv){
+    // Local environment with `size` slots, of a block inside superEnv
+    Environment(Environment superEnv, int size){
         this.superEnvironment = superEnv;
+        environment = null;
+        slots = new Object[size];
+        upvalues = superEnv.upvalues;
+        if (Stats.ENABLED) Stats.environments++;
+    }
+
+    // Environment of a call to a function that captured `upvalues`
+    Environment(Upvalue[] upvalues, int size){
+        environment = null;
+        slots = new Object[size];
+        this.upvalues = upvalues;
+        if (Stats.ENABLED) Stats.environments++;
     }
 
     // get, define and assign methods
 
+    // Global variables only
     Object get(Token token){
         if (environment.containsKey(token.lexeme)) return environment.get(token.lexeme);
-        if (superEnvironment != null) return superEnvironment.get(token);
 
         reportAndThrowUndefinedVariableError(token);
         // Unreachable
         return null;
     }
 
+    // Locals are defined in the same order the Resolver declared them, so the next free slot is theirs
     void define(String name, Object value){
-        environment.put(name, value);
+        if (slots == null) environment.put(name, value);
+        else slots[definedSlots++] = value;
     }
 
+    // Declarations: locals go in the slot the Resolver gave them, which blocks without an environment of their own
+    // may have placed anywhere in this one, globals (slot -1) by name
+    void define(int slot, String name, Object value){
+        if (slot < 0) environment.put(name, value);
+        else slots[slot] = value;
+    }
+
+    // Global variables only
     void assign(Token name, Object newValue){
 
         if (environment.containsKey(name.lexeme)) environment.put(name.lexeme, newValue);
-        else if (superEnvironment != null) superEnvironment.assign(name, newValue);
         else reportAndThrowUndefinedVariableError(name);
-        
+
+    }
+
+    void assignAt(int depth, int slot, Object newValue){
+        getRequiredEnvironment(depth).slots[slot] = newValue;
     }
 
-    void assignAt(Token name, Object newValue, int depth){
-        Environment requiredEnvironment = getRequiredEnvironment(depth);
-        requiredEnvironment.assign(name, newValue);
+    Object getAt(int depth, int slot){
+        return getRequiredEnvironment(depth).slots[slot];
     }
 
-    Object getAt(Token token, Integer depth){
-        Environment requiredEnvironment = getRequiredEnvironment(depth);
-        return requiredEnvironment.get(token);
+    Object getUpvalue(int index){
+        return upvalues[index].value;
     }
 
-    // Only for "this"
-    Object getThis(){
-        return environment.get("this");
+    void setUpvalue(int index, Object newValue){
+        upvalues[index].value = newValue;
+    }
+
+    // Locals captured by a closure, their slot holds the Upvalue
+    Object getBoxedAt(int depth, int slot){
+        return ((Upvalue) getRequiredEnvironment(depth).slots[slot]).value;
+    }
+
+    void assignBoxedAt(int depth, int slot, Object newValue){
+        ((Upvalue) getRequiredEnvironment(depth).slots[slot]).value = newValue;
+    }
+
+    // Boxes a parameter that a closure captures, once the call has defined it
+    void box(int slot){
+        slots[slot] = new Upvalue(slots[slot]);
+    }
+
+    // Upvalues of a closure created in this environment
+    // captures holds a (depth, slot) pair per boxed local it captures, (-1, index) for the upvalues it shares with the enclosing function
+    Upvalue[] capture(int[] captures){
+        if (captures.length == 0) return NO_UPVALUES;
+
+        Upvalue[] captured = new Upvalue[captures.length / 2];
+        for (int i=0; i < captured.length; i++){
+            int depth = captures[2 * i];
+            int index = captures[2 * i + 1];
+            captured[i] = (depth < 0) ? upvalues[index] : (Upvalue) getRequiredEnvironment(depth).slots[index];
+        }
+        return captured;
     }
 
     private Environment getRequiredEnvironment(int depth){
+        if (Stats.ENABLED){
+            Stats.localLookups++;
+            Stats.hops += depth;
+        }
         int currentDepth = depth;
         Environment requiredEnvironment = this;
         while (currentDepth > 0){
-            requiredEnvironment = requiredEnvironment.superEnvironment; 
+            requiredEnvironment = requiredEnvironment.superEnvironment;
             currentDepth--;
         }
         return requiredEnvironment;
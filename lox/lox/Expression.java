@@ -1,10 +1,112 @@
 package lox.lox;
 
 import lox.scanner.Token;
+import java.io.IOException;
 import java.util.ArrayList;
 
 abstract class Expression {
+	static final int LAYOUT = 430732639;
+	boolean numeric;
 	abstract <R> R accept(ExpressionVisitor<R> visitor);
+	abstract void write(ASTWriter out) throws IOException;
+
+	static Expression read(ASTReader in, int tag) throws IOException{
+		switch (tag) {
+			case 0: {
+				BinaryExpression node = new BinaryExpression(in.readExpression(), in.readToken(), in.readExpression());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 1: {
+				UnaryExpression node = new UnaryExpression(in.readToken(), in.readExpression());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 2: {
+				GroupingExpression node = new GroupingExpression(in.readExpression());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 3: {
+				LiteralExpression node = new LiteralExpression(in.readLiteral());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 4: {
+				VariableExpression node = new VariableExpression(in.readToken());
+				node.depth = in.readInt();
+				node.slot = in.readInt();
+				node.upvalue = in.readInt();
+				node.boxed = in.readBoolean();
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 5: {
+				AssignmentExpression node = new AssignmentExpression(in.readToken(), in.readExpression());
+				node.depth = in.readInt();
+				node.slot = in.readInt();
+				node.upvalue = in.readInt();
+				node.boxed = in.readBoolean();
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 6: {
+				LogicalExpression node = new LogicalExpression(in.readExpression(), in.readToken(), in.readExpression());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 7: {
+				CallExpression node = new CallExpression(in.readExpression(), in.readToken(), in.readExpressions());
+				node.initCache = in.readInlineCache();
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 8: {
+				GetExpression node = new GetExpression(in.readExpression(), in.readToken());
+				node.methodCache = in.readInlineCache();
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 9: {
+				SetExpression node = new SetExpression(in.readExpression(), in.readToken(), in.readExpression());
+				node.ownMethodCache = in.readInlineCache();
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 10: {
+				ThisExpression node = new ThisExpression(in.readToken());
+				node.depth = in.readInt();
+				node.slot = in.readInt();
+				node.upvalue = in.readInt();
+				node.boxed = in.readBoolean();
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 11: {
+				SuperExpression node = new SuperExpression(in.readToken(), in.readToken(), (ThisExpression) in.readExpression());
+				node.upvalue = in.readInt();
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 12: {
+				ArrayExpression node = new ArrayExpression(in.readExpressions());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 13: {
+				ArrayElementExpression node = new ArrayElementExpression(in.readToken(), in.readExpression(), in.readExpression());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			case 14: {
+				ArrayElementAssignmentExpression node = new ArrayElementAssignmentExpression(in.readToken(), in.readExpression(), in.readExpression(), in.readExpression());
+				node.numeric = in.readBoolean();
+				return node;
+			}
+			default:
+				throw new IOException("Unknown Expression tag: " + tag);
+		}
+	}
 }
 
 class BinaryExpression extends Expression{
@@ -21,6 +123,15 @@ class BinaryExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitBinaryExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(0);
+		out.writeExpression(left);
+		out.writeToken(operator);
+		out.writeExpression(right);
+		out.writeBoolean(numeric);
+	}
 }
 
 class UnaryExpression extends Expression{
@@ -35,6 +146,14 @@ class UnaryExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitUnaryExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(1);
+		out.writeToken(operator);
+		out.writeExpression(expression);
+		out.writeBoolean(numeric);
+	}
 }
 
 class GroupingExpression extends Expression{
@@ -47,6 +166,13 @@ class GroupingExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitGroupingExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(2);
+		out.writeExpression(expression);
+		out.writeBoolean(numeric);
+	}
 }
 
 class LiteralExpression extends Expression{
@@ -59,10 +185,21 @@ class LiteralExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitLiteralExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(3);
+		out.writeLiteral(value);
+		out.writeBoolean(numeric);
+	}
 }
 
 class VariableExpression extends Expression{
 	final Token name;
+	int depth = -1;
+	int slot;
+	int upvalue = -1;
+	boolean boxed;
 
 	VariableExpression(Token name){
 		this.name = name;
@@ -71,11 +208,26 @@ class VariableExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitVariableExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(4);
+		out.writeToken(name);
+		out.writeInt(depth);
+		out.writeInt(slot);
+		out.writeInt(upvalue);
+		out.writeBoolean(boxed);
+		out.writeBoolean(numeric);
+	}
 }
 
 class AssignmentExpression extends Expression{
 	final Token name;
 	final Expression value;
+	int depth = -1;
+	int slot;
+	int upvalue = -1;
+	boolean boxed;
 
 	AssignmentExpression(Token name, Expression value){
 		this.name = name;
@@ -85,6 +237,18 @@ class AssignmentExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitAssignmentExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(5);
+		out.writeToken(name);
+		out.writeExpression(value);
+		out.writeInt(depth);
+		out.writeInt(slot);
+		out.writeInt(upvalue);
+		out.writeBoolean(boxed);
+		out.writeBoolean(numeric);
+	}
 }
 
 class LogicalExpression extends Expression{
@@ -101,12 +265,22 @@ class LogicalExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitLogicalExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(6);
+		out.writeExpression(left);
+		out.writeToken(operator);
+		out.writeExpression(right);
+		out.writeBoolean(numeric);
+	}
 }
 
 class CallExpression extends Expression{
 	final Expression callee;
 	final Token closingParen;
 	final ArrayList<Expression> arguments;
+	InlineCache initCache;
 
 	CallExpression(Expression callee, Token closingParen, ArrayList<Expression> arguments){
 		this.callee = callee;
@@ -117,11 +291,22 @@ class CallExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitCallExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(7);
+		out.writeExpression(callee);
+		out.writeToken(closingParen);
+		out.writeExpressions(arguments);
+		out.writeInlineCache(initCache);
+		out.writeBoolean(numeric);
+	}
 }
 
 class GetExpression extends Expression{
 	final Expression object;
 	final Token name;
+	InlineCache methodCache;
 
 	GetExpression(Expression object, Token name){
 		this.object = object;
@@ -131,12 +316,22 @@ class GetExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitGetExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(8);
+		out.writeExpression(object);
+		out.writeToken(name);
+		out.writeInlineCache(methodCache);
+		out.writeBoolean(numeric);
+	}
 }
 
 class SetExpression extends Expression{
 	final Expression object;
 	final Token name;
 	final Expression value;
+	InlineCache ownMethodCache;
 
 	SetExpression(Expression object, Token name, Expression value){
 		this.object = object;
@@ -147,10 +342,24 @@ class SetExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitSetExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(9);
+		out.writeExpression(object);
+		out.writeToken(name);
+		out.writeExpression(value);
+		out.writeInlineCache(ownMethodCache);
+		out.writeBoolean(numeric);
+	}
 }
 
 class ThisExpression extends Expression{
 	final Token keyword;
+	int depth = -1;
+	int slot;
+	int upvalue = -1;
+	boolean boxed;
 
 	ThisExpression(Token keyword){
 		this.keyword = keyword;
@@ -159,20 +368,44 @@ class ThisExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitThisExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(10);
+		out.writeToken(keyword);
+		out.writeInt(depth);
+		out.writeInt(slot);
+		out.writeInt(upvalue);
+		out.writeBoolean(boxed);
+		out.writeBoolean(numeric);
+	}
 }
 
 class SuperExpression extends Expression{
 	final Token keyword;
 	final Token method;
+	final ThisExpression receiver;
+	int upvalue = -1;
 
-	SuperExpression(Token keyword, Token method){
+	SuperExpression(Token keyword, Token method, ThisExpression receiver){
 		this.keyword = keyword;
 		this.method = method;
+		this.receiver = receiver;
 	}
 
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitSuperExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(11);
+		out.writeToken(keyword);
+		out.writeToken(method);
+		out.writeExpression(receiver);
+		out.writeInt(upvalue);
+		out.writeBoolean(numeric);
+	}
 }
 
 class ArrayExpression extends Expression{
@@ -185,6 +418,13 @@ class ArrayExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitArrayExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(12);
+		out.writeExpressions(elements);
+		out.writeBoolean(numeric);
+	}
 }
 
 class ArrayElementExpression extends Expression{
@@ -201,6 +441,15 @@ class ArrayElementExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitArrayElementExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(13);
+		out.writeToken(leftBracket);
+		out.writeExpression(arrayExpression);
+		out.writeExpression(index);
+		out.writeBoolean(numeric);
+	}
 }
 
 class ArrayElementAssignmentExpression extends Expression{
@@ -219,6 +468,16 @@ class ArrayElementAssignmentExpression extends Expression{
 	@Override
 	<R> R accept(ExpressionVisitor<R> visit){
 	 return visit.visitArrayElementAssignmentExpression(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(14);
+		out.writeToken(leftBracket);
+		out.writeExpression(arrayExpression);
+		out.writeExpression(index);
+		out.writeExpression(value);
+		out.writeBoolean(numeric);
+	}
 }
 
 
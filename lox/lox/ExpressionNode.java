@@ -0,0 +1,950 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+import lox.error.Error;
+import lox.error.RuntimeError;
+import lox.scanner.Token;
+
+// Executable node built once from an Expression by the TreeCompiler
+// Every node knows exactly what it does, so execution needs no visitor dispatch or operator switch
+abstract class ExpressionNode {
+    // The node holding this one, set by the holder when it is built
+    NodeParent parent;
+
+    abstract Object execute(Environment environment);
+
+    // The value as a primitive double, for the nodes computing on numbers
+    // A value that is not a number is thrown back in an UnexpectedResultException, so that it is not executed twice
+    // Variable reads repeat this check in their own override, which keeps the call to execute here off their hot path
+    double executeDouble(Environment environment){
+        Object value = execute(environment);
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResultException(value);
+    }
+
+    // Puts `node` in the place of this one for good, used by nodes that rewrite themselves (see AddNode)
+    final void replace(ExpressionNode node){
+        parent.replaceChild(this, node);
+        node.parent = parent;
+        parent = null;
+    }
+
+    static <T extends ExpressionNode> T adopt(NodeParent parent, T child){
+        if (child != null) child.parent = parent;
+        return child;
+    }
+
+    static ExpressionNode[] adoptAll(NodeParent parent, ExpressionNode[] children){
+        for (ExpressionNode child : children){
+            adopt(parent, child);
+        }
+        return children;
+    }
+
+    static void replaceIn(ExpressionNode[] children, ExpressionNode child, ExpressionNode replacement){
+        for (int i=0; i < children.length; i++){
+            if (children[i] == child) children[i] = replacement;
+        }
+    }
+}
+
+// Node or statement node with expression nodes as children
+interface NodeParent {
+    void replaceChild(ExpressionNode child, ExpressionNode replacement);
+}
+
+// The value of an executeDouble that was not a number
+// Never serialized, it does not leave the node that catches it
+@SuppressWarnings("serial")
+final class UnexpectedResultException extends RuntimeException {
+    final Object value;
+
+    UnexpectedResultException(Object value){
+        // Control flow only, no stack trace
+        super(null, null, false, false);
+        this.value = value;
+    }
+}
+
+// Literals and variables
+
+final class NumberLiteralNode extends ExpressionNode {
+    private final Double value;
+    private final double number;
+
+    NumberLiteralNode(Double value){
+        this.value = value;
+        this.number = value;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return value;
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        return number;
+    }
+}
+
+final class LiteralNode extends ExpressionNode {
+    private final Object value;
+
+    LiteralNode(Object value){
+        this.value = value;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return value;
+    }
+}
+
+final class LocalReadNode extends ExpressionNode {
+    private final int depth;
+    private final int slot;
+
+    LocalReadNode(int depth, int slot){
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return environment.getAt(depth, slot);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        Object value = environment.getAt(depth, slot);
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResultException(value);
+    }
+}
+
+final class GlobalReadNode extends ExpressionNode {
+    private final Environment globals;
+    private final Token name;
+
+    GlobalReadNode(Environment globals, Token name){
+        this.globals = globals;
+        this.name = name;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return globals.get(name);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        Object value = globals.get(name);
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResultException(value);
+    }
+}
+
+final class LocalAssignNode extends ExpressionNode implements NodeParent {
+    private final int depth;
+    private final int slot;
+    private ExpressionNode value;
+
+    LocalAssignNode(int depth, int slot, ExpressionNode value){
+        this.depth = depth;
+        this.slot = slot;
+        this.value = adopt(this, value);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object newValue = value.execute(environment);
+        environment.assignAt(depth, slot, newValue);
+        return newValue;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        value = replacement;
+    }
+}
+
+final class GlobalAssignNode extends ExpressionNode implements NodeParent {
+    private final Environment globals;
+    private final Token name;
+    private ExpressionNode value;
+
+    GlobalAssignNode(Environment globals, Token name, ExpressionNode value){
+        this.globals = globals;
+        this.name = name;
+        this.value = adopt(this, value);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object newValue = value.execute(environment);
+        globals.assign(name, newValue);
+        return newValue;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        value = replacement;
+    }
+}
+
+// Locals captured by a closure, read and assigned through the box in their slot
+final class BoxedReadNode extends ExpressionNode {
+    private final int depth;
+    private final int slot;
+
+    BoxedReadNode(int depth, int slot){
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return environment.getBoxedAt(depth, slot);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        Object value = environment.getBoxedAt(depth, slot);
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResultException(value);
+    }
+}
+
+final class BoxedAssignNode extends ExpressionNode implements NodeParent {
+    private final int depth;
+    private final int slot;
+    private ExpressionNode value;
+
+    BoxedAssignNode(int depth, int slot, ExpressionNode value){
+        this.depth = depth;
+        this.slot = slot;
+        this.value = adopt(this, value);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object newValue = value.execute(environment);
+        environment.assignBoxedAt(depth, slot, newValue);
+        return newValue;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        value = replacement;
+    }
+}
+
+// Variables of enclosing functions, through the upvalues of the running one
+final class UpvalueReadNode extends ExpressionNode {
+    private final int index;
+
+    UpvalueReadNode(int index){
+        this.index = index;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return environment.getUpvalue(index);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        Object value = environment.getUpvalue(index);
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResultException(value);
+    }
+}
+
+final class UpvalueAssignNode extends ExpressionNode implements NodeParent {
+    private final int index;
+    private ExpressionNode value;
+
+    UpvalueAssignNode(int index, ExpressionNode value){
+        this.index = index;
+        this.value = adopt(this, value);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object newValue = value.execute(environment);
+        environment.setUpvalue(index, newValue);
+        return newValue;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        value = replacement;
+    }
+}
+
+// Raises a runtime error once it is reached, like `this` outside of a class
+final class RuntimeErrorNode extends ExpressionNode {
+    private final Token token;
+    private final String message;
+
+    RuntimeErrorNode(Token token, String message){
+        this.token = token;
+        this.message = message;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        throw Error.createRuntimeError(token, message);
+    }
+}
+
+// Binary operators
+
+abstract class BinaryNode extends ExpressionNode implements NodeParent {
+    final Token operator;
+    ExpressionNode left;
+    ExpressionNode right;
+
+    BinaryNode(Token operator, ExpressionNode left, ExpressionNode right){
+        this.operator = operator;
+        this.left = adopt(this, left);
+        this.right = adopt(this, right);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (left == child) left = replacement;
+        else right = replacement;
+    }
+}
+
+// Operators only defined on numbers, both operands are executed as primitive doubles
+// Each node does that itself, so that the JIT profiles the operand types of every operator on its own
+// Anything else is a runtime error, the right operand still runs first like in the interpreter
+abstract class NumberBinaryNode extends BinaryNode {
+    NumberBinaryNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    final RuntimeError leftOperandError(Environment environment){
+        right.execute(environment);
+        return Interpreter.createNumberOperandsError(operator);
+    }
+
+    final RuntimeError rightOperandError(){
+        return Interpreter.createNumberOperandsError(operator);
+    }
+}
+
+// `+` before its first run: it replaces itself with the node for the operand types it sees then, a NumberAddNode,
+// a StringAddNode or, for anything else (arrays or a mix), a GenericAddNode
+final class AddNode extends BinaryNode {
+    AddNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object leftValue = left.execute(environment);
+        Object rightValue = right.execute(environment);
+        // Still running in a recursive call after the replacement happened, the tree is already specialized
+        if (parent != null) replace(specialize(leftValue, rightValue));
+        return Interpreter.add(operator, leftValue, rightValue);
+    }
+
+    private BinaryNode specialize(Object leftValue, Object rightValue){
+        if ((leftValue instanceof Double) && (rightValue instanceof Double)) return new NumberAddNode(operator, left, right);
+        if (Interpreter.isString(leftValue) && Interpreter.isString(rightValue)) return new StringAddNode(operator, left, right);
+        return new GenericAddNode(operator, left, right);
+    }
+}
+
+// `+` specialized on numbers, replaced by a GenericAddNode the first time its operands are not both numbers
+final class NumberAddNode extends BinaryNode {
+    NumberAddNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        try {
+            return executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            return e.value;
+        }
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            return deoptimize(e.value, right.execute(environment));
+        }
+
+        try {
+            return leftValue + right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            return deoptimize(leftValue, e.value);
+        }
+    }
+
+    private double deoptimize(Object leftValue, Object rightValue){
+        if (parent != null) replace(new GenericAddNode(operator, left, right));
+
+        Object result = Interpreter.add(operator, leftValue, rightValue);
+        if (result instanceof Double) return (double) result;
+        throw new UnexpectedResultException(result);
+    }
+}
+
+// `+` specialized on strings (plain or ropes), replaced by a GenericAddNode the first time its operands are not both strings
+final class StringAddNode extends BinaryNode {
+    StringAddNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object leftValue = left.execute(environment);
+        Object rightValue = right.execute(environment);
+        if (Interpreter.isString(leftValue) && Interpreter.isString(rightValue)) return LoxString.concat(leftValue, rightValue);
+
+        if (parent != null) replace(new GenericAddNode(operator, left, right));
+        return Interpreter.add(operator, leftValue, rightValue);
+    }
+}
+
+final class GenericAddNode extends BinaryNode {
+    GenericAddNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object leftValue = left.execute(environment);
+        Object rightValue = right.execute(environment);
+        return Interpreter.add(operator, leftValue, rightValue);
+    }
+}
+
+final class SubtractNode extends NumberBinaryNode {
+    SubtractNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return executeDouble(environment);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw leftOperandError(environment);
+        }
+
+        try {
+            return leftValue - right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw rightOperandError();
+        }
+    }
+}
+
+final class MultiplyNode extends NumberBinaryNode {
+    MultiplyNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return executeDouble(environment);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw leftOperandError(environment);
+        }
+
+        try {
+            return leftValue * right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw rightOperandError();
+        }
+    }
+}
+
+final class DivideNode extends NumberBinaryNode {
+    DivideNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return executeDouble(environment);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw leftOperandError(environment);
+        }
+
+        double rightValue;
+        try {
+            rightValue = right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw rightOperandError();
+        }
+        Interpreter.checkIfRightValueZero(operator, rightValue);
+        return leftValue / rightValue;
+    }
+}
+
+final class LessNode extends NumberBinaryNode {
+    LessNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw leftOperandError(environment);
+        }
+
+        try {
+            return leftValue < right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw rightOperandError();
+        }
+    }
+}
+
+final class GreaterNode extends NumberBinaryNode {
+    GreaterNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw leftOperandError(environment);
+        }
+
+        try {
+            return leftValue > right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw rightOperandError();
+        }
+    }
+}
+
+final class LessEqualNode extends NumberBinaryNode {
+    LessEqualNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw leftOperandError(environment);
+        }
+
+        try {
+            return leftValue <= right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw rightOperandError();
+        }
+    }
+}
+
+final class GreaterEqualNode extends NumberBinaryNode {
+    GreaterEqualNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        double leftValue;
+        try {
+            leftValue = left.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw leftOperandError(environment);
+        }
+
+        try {
+            return leftValue >= right.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw rightOperandError();
+        }
+    }
+}
+
+final class EqualNode extends BinaryNode {
+    EqualNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object leftValue = left.execute(environment);
+        Object rightValue = right.execute(environment);
+        return Interpreter.isEqual(leftValue, rightValue);
+    }
+}
+
+final class NotEqualNode extends BinaryNode {
+    NotEqualNode(Token operator, ExpressionNode left, ExpressionNode right){
+        super(operator, left, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object leftValue = left.execute(environment);
+        Object rightValue = right.execute(environment);
+        return Interpreter.isNotEqual(leftValue, rightValue);
+    }
+}
+
+// Unary and logical operators
+
+final class NegateNode extends ExpressionNode implements NodeParent {
+    private final Token operator;
+    private ExpressionNode expression;
+
+    NegateNode(Token operator, ExpressionNode expression){
+        this.operator = operator;
+        this.expression = adopt(this, expression);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return executeDouble(environment);
+    }
+
+    @Override
+    double executeDouble(Environment environment){
+        try {
+            return -expression.executeDouble(environment);
+        } catch (UnexpectedResultException e){
+            throw Interpreter.createNumberOperandError(operator);
+        }
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        expression = replacement;
+    }
+}
+
+final class NotNode extends ExpressionNode implements NodeParent {
+    private ExpressionNode expression;
+
+    NotNode(ExpressionNode expression){
+        this.expression = adopt(this, expression);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return ! Interpreter.truthOrFalse(expression.execute(environment));
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        expression = replacement;
+    }
+}
+
+final class AndNode extends ExpressionNode implements NodeParent {
+    private ExpressionNode left;
+    private ExpressionNode right;
+
+    AndNode(ExpressionNode left, ExpressionNode right){
+        this.left = adopt(this, left);
+        this.right = adopt(this, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object leftValue = left.execute(environment);
+        if (Interpreter.truthOrFalse(leftValue)) return right.execute(environment);
+        return leftValue;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (left == child) left = replacement;
+        else right = replacement;
+    }
+}
+
+final class OrNode extends ExpressionNode implements NodeParent {
+    private ExpressionNode left;
+    private ExpressionNode right;
+
+    OrNode(ExpressionNode left, ExpressionNode right){
+        this.left = adopt(this, left);
+        this.right = adopt(this, right);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        Object leftValue = left.execute(environment);
+        if (Interpreter.truthOrFalse(leftValue)) return leftValue;
+        return right.execute(environment);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (left == child) left = replacement;
+        else right = replacement;
+    }
+}
+
+// Calls, properties and classes
+
+final class CallNode extends ExpressionNode implements NodeParent {
+    private ExpressionNode callee;
+    private final Token closingParen;
+    private final ExpressionNode[] arguments;
+    private final InlineCache initCache;
+
+    CallNode(ExpressionNode callee, Token closingParen, ExpressionNode[] arguments, InlineCache initCache){
+        this.callee = adopt(this, callee);
+        this.closingParen = closingParen;
+        this.arguments = adoptAll(this, arguments);
+        this.initCache = initCache;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        ArrayList<Object> argumentValues = new ArrayList<>(arguments.length);
+        for (ExpressionNode argument : arguments){
+            argumentValues.add(argument.execute(environment));
+        }
+
+        // Tree functions and natives never need the tree walking interpreter
+        // Lox functions are called right here, like in Interpreter.visitCallExpression
+        Object function = callee.execute(environment);
+        if (function instanceof LoxFunction){
+            LoxFunction loxFunction = (LoxFunction) function;
+            Interpreter.checkArity(closingParen, loxFunction, argumentValues.size());
+            return loxFunction.call(loxFunction.receiver, null, argumentValues);
+        }
+        return Interpreter.call(closingParen, function, argumentValues, null, initCache);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (callee == child) callee = replacement;
+        else replaceIn(arguments, child, replacement);
+    }
+}
+
+// `object.name(arguments)` without creating the bound method
+final class InvokeNode extends ExpressionNode implements NodeParent {
+    private ExpressionNode object;
+    private final Token name;
+    private final InlineCache methodCache;
+    private final Token closingParen;
+    private final ExpressionNode[] arguments;
+    private final InlineCache initCache;
+
+    InvokeNode(ExpressionNode object, Token name, InlineCache methodCache, Token closingParen, ExpressionNode[] arguments, InlineCache initCache){
+        this.object = adopt(this, object);
+        this.name = name;
+        this.methodCache = methodCache;
+        this.closingParen = closingParen;
+        this.arguments = adoptAll(this, arguments);
+        this.initCache = initCache;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        ArrayList<Object> argumentValues = new ArrayList<>(arguments.length);
+        for (ExpressionNode argument : arguments){
+            argumentValues.add(argument.execute(environment));
+        }
+
+        Object instance = object.execute(environment);
+        LoxFunction method = Interpreter.methodToInvoke(instance, methodCache);
+        if (method != null){
+            Interpreter.checkArity(closingParen, method, argumentValues.size());
+            return method.call((LoxInstance) instance, null, argumentValues);
+        }
+        return Interpreter.call(closingParen, Interpreter.getProperty(name, instance, methodCache), argumentValues, null, initCache);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (object == child) object = replacement;
+        else replaceIn(arguments, child, replacement);
+    }
+}
+
+final class GetNode extends ExpressionNode implements NodeParent {
+    private ExpressionNode object;
+    private final Token name;
+    private final InlineCache methodCache;
+
+    GetNode(ExpressionNode object, Token name, InlineCache methodCache){
+        this.object = adopt(this, object);
+        this.name = name;
+        this.methodCache = methodCache;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return Interpreter.getProperty(name, object.execute(environment), methodCache);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        object = replacement;
+    }
+}
+
+final class SetNode extends ExpressionNode implements NodeParent {
+    private ExpressionNode object;
+    private final Token name;
+    private ExpressionNode value;
+    private final InlineCache ownMethodCache;
+
+    SetNode(ExpressionNode object, Token name, ExpressionNode value, InlineCache ownMethodCache){
+        this.object = adopt(this, object);
+        this.name = name;
+        this.value = adopt(this, value);
+        this.ownMethodCache = ownMethodCache;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        LoxInstance instance = Interpreter.checkIfInstance(name, object.execute(environment));
+
+        Object newValue = value.execute(environment);
+        instance.set(name, newValue, ownMethodCache);
+        return newValue;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (object == child) object = replacement;
+        else value = replacement;
+    }
+}
+
+final class SuperNode extends ExpressionNode {
+    private final SuperExpression expression;
+
+    SuperNode(SuperExpression expression){
+        this.expression = expression;
+    }
+
+    @Override
+    Object execute(Environment environment){
+        return Interpreter.getSuperMethod(expression, environment);
+    }
+}
+
+// Arrays
+
+final class ArrayNode extends ExpressionNode implements NodeParent {
+    private final ExpressionNode[] elements;
+
+    ArrayNode(ExpressionNode[] elements){
+        this.elements = adoptAll(this, elements);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        ArrayList<Object> values = new ArrayList<>(elements.length);
+        for (ExpressionNode element : elements){
+            values.add(element.execute(environment));
+        }
+        return new LoxArray(values);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        replaceIn(elements, child, replacement);
+    }
+}
+
+final class ArrayElementNode extends ExpressionNode implements NodeParent {
+    private final Token leftBracket;
+    private ExpressionNode array;
+    private ExpressionNode index;
+
+    ArrayElementNode(Token leftBracket, ExpressionNode array, ExpressionNode index){
+        this.leftBracket = leftBracket;
+        this.array = adopt(this, array);
+        this.index = adopt(this, index);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        LoxArray loxArray = Interpreter.checkIfArrayToAccess(leftBracket, array.execute(environment));
+        int elementIndex = Interpreter.checkElementIndex(leftBracket, loxArray, index.execute(environment));
+        return loxArray.get(elementIndex);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (array == child) array = replacement;
+        else index = replacement;
+    }
+}
+
+final class ArrayElementAssignNode extends ExpressionNode implements NodeParent {
+    private final Token leftBracket;
+    private ExpressionNode array;
+    private ExpressionNode index;
+    private ExpressionNode value;
+
+    ArrayElementAssignNode(Token leftBracket, ExpressionNode array, ExpressionNode index, ExpressionNode value){
+        this.leftBracket = leftBracket;
+        this.array = adopt(this, array);
+        this.index = adopt(this, index);
+        this.value = adopt(this, value);
+    }
+
+    @Override
+    Object execute(Environment environment){
+        LoxArray loxArray = Interpreter.checkIfArrayToAssign(leftBracket, array.execute(environment));
+        int elementIndex = Interpreter.checkAssignmentIndex(leftBracket, loxArray, index.execute(environment));
+
+        Object newValue = value.execute(environment);
+        Interpreter.setElement(loxArray, elementIndex, newValue);
+        return newValue;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (array == child) array = replacement;
+        else if (index == child) index = replacement;
+        else value = replacement;
+    }
+}
@@ -0,0 +1,68 @@
+package lox.lox;
+
+// Per-site cache of the method a property name resolves to, keyed by the receiver's LoxClass,
+// and of the slot the field with that name has, keyed by the receiver's Shape
+// Each site remembers up to MAX_ENTRIES classes and shapes (polymorphic), a site that sees more stops caching (megamorphic)
+// Classes never change their methods or superclass and shapes never change their layout once created,
+// so an entry stays valid as long as the class or shape matches
+final class InlineCache {
+
+    private static final int MAX_ENTRIES = 4;
+
+    final String name;
+    // Only look at the methods declared directly on the class (what LoxInstance.set checks)
+    final boolean ownMethodsOnly;
+
+    private final LoxClass[] classes = new LoxClass[MAX_ENTRIES];
+    private final LoxFunction[] methods = new LoxFunction[MAX_ENTRIES];
+    private int size = 0;
+
+    private final Shape[] shapes = new Shape[MAX_ENTRIES];
+    private final int[] slots = new int[MAX_ENTRIES];
+    private int shapeCount = 0;
+
+    InlineCache(String name, boolean ownMethodsOnly){
+        this.name = name;
+        this.ownMethodsOnly = ownMethodsOnly;
+    }
+
+    // Method looked up along the superclass chain
+    static InlineCache forMethod(String name){
+        return new InlineCache(name, false);
+    }
+
+    // Method declared on the class itself
+    static InlineCache forOwnMethod(String name){
+        return new InlineCache(name, true);
+    }
+
+    // The method `name` resolves to on loxClass, null if there is none
+    LoxFunction lookup(LoxClass loxClass){
+        for (int i=0; i < size; i++){
+            if (classes[i] == loxClass) return methods[i];
+        }
+
+        LoxFunction method = ownMethodsOnly ? loxClass.methods.get(name) : loxClass.findMethod(name);
+        if (size < MAX_ENTRIES){
+            classes[size] = loxClass;
+            methods[size] = method;
+            size++;
+        }
+        return method;
+    }
+
+    // Slot of the field `name` in instances of the shape, -1 if they do not have it
+    int slotOf(Shape shape){
+        for (int i=0; i < shapeCount; i++){
+            if (shapes[i] == shape) return slots[i];
+        }
+
+        int slot = shape.slotOf(name);
+        if (shapeCount < MAX_ENTRIES){
+            shapes[shapeCount] = shape;
+            slots[shapeCount] = slot;
+            shapeCount++;
+        }
+        return slot;
+    }
+}
@@ -6,7 +6,6 @@ import java.util.Scanner;
 
 import lox.error.Error;
 import lox.error.RuntimeError;
-import lox.error.Return;
 
 import lox.scanner.Token;
 
@@ -15,28 +14,30 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     private final ArrayList<Statement> statements;
     Environment environment;
     final Environment globals;
-    static final HashMap<Expression, Integer> locals = new HashMap<>();
 
     public Interpreter(ArrayList<Statement> stmnts, Environment env){
         statements = stmnts;
         globals = env;
         environment = globals;
 
-        addNativeFunctions();
+        addNativeFunctions(globals);
     }
 
     protected void interpret(){
         try{
             for (Statement stmt : statements){
-                evaluate(stmt);
+                ReturnValue ret = evaluate(stmt);
+                if (ret != null){
+                    reportReturnOutsideFunction(ret);
+                    break;
+                }
             }
-        } catch(Return ret){
-            Error.reportRuntimeError(ret);
         } catch (RuntimeError error){
         }
     }
 
     // VISITOR PATTERN visit methods for statement
+    // A statement evaluates to null, or to the ReturnValue of a `return` statement it executed
 
     @Override
 	public Object visitExpressionStatement(ExpressionStatement stmt){
@@ -47,36 +48,48 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     @Override
 	public Object visitPrintStatement(PrintStatement stmt){
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        Output.println(stringify(value));
         return null;
     }
 
     @Override
     public Object visitWhileStatement(WhileStatement stmt) {
+        if (isAlwaysTrue(stmt.expr)){
+            while (true){
+                ReturnValue ret = evaluate(stmt.statement);
+                if (ret != null) return ret;
+            }
+        }
+
         while(truthOrFalse(evaluate(stmt.expr))){
-            evaluate(stmt.statement);
+            ReturnValue ret = evaluate(stmt.statement);
+            if (ret != null) return ret;
         }
         return null;
     }
 
     @Override
     public Object visitIfElseStatement(IfElseStatement stmt) {
-        if (truthOrFalse(evaluate(stmt.expr))) evaluate(stmt.ifStatement);
-        else if (stmt.elseStatement != null) evaluate(stmt.elseStatement);
+        if (truthOrFalse(evaluate(stmt.expr))) return evaluate(stmt.ifStatement);
+        else if (stmt.elseStatement != null) return evaluate(stmt.elseStatement);
 
         return null;
     }
 
     @Override
     public Object visitFunctionStatement(FunctionStatement stmt) {
-        LoxFunction function = new LoxFunction(stmt, environment, stmt.type);
-        environment.define(stmt.name.lexeme, function);
+        // A function captures its own variable to call itself, the box has to be there before the upvalues are captured
+        if (stmt.boxed) environment.define(stmt.slot, stmt.name.lexeme, new Upvalue(null));
+        LoxFunction function = new LoxFunction(stmt, environment.capture(stmt.upvalues), stmt.type, null);
+
+        if (stmt.boxed) environment.assignBoxedAt(0, stmt.slot, function);
+        else environment.define(stmt.slot, stmt.name.lexeme, function);
         return null;
     }
 
     @Override
     public Object visitClassStatement(ClassStatement stmt){
-        environment.define(stmt.name.lexeme, null);
+        if (stmt.boxed) environment.define(stmt.slot, stmt.name.lexeme, new Upvalue(null));
 
         Object superclass = null;
         if (stmt.superclass != null){
@@ -84,25 +97,27 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
             if (!(superclass instanceof LoxClass)) throw Error.createRuntimeError(stmt.name, "superclass has to be a class");
 
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            environment = new Environment(environment, 1);
+            environment.define("super", new Upvalue(superclass));
         }
 
         HashMap<String, LoxFunction> methods = new HashMap<>();
         for (FunctionStatement funcStatement : stmt.methods){
-            methods.put(funcStatement.name.lexeme, new LoxFunction(funcStatement, environment, funcStatement.type));
+            methods.put(funcStatement.name.lexeme, new LoxFunction(funcStatement, environment.capture(funcStatement.upvalues), funcStatement.type, null));
         }
 
         HashMap<String, LoxFunction> staticMethods = new HashMap<>();
         for (FunctionStatement funcStatement : stmt.staticMethods){
-            staticMethods.put(funcStatement.name.lexeme, new LoxFunction(funcStatement, environment, funcStatement.type));
+            staticMethods.put(funcStatement.name.lexeme, new LoxFunction(funcStatement, environment.capture(funcStatement.upvalues), funcStatement.type, null));
         }
 
         LoxClass class_ = new LoxClass(stmt.name, (LoxClass) superclass, methods, staticMethods);
         
         if (superclass != null) environment = environment.superEnvironment;
 
-        environment.assign(stmt.name, class_);
+        // Methods only look the class name up when called, so it can be defined once the class is built
+        if (stmt.boxed) environment.assignBoxedAt(0, stmt.slot, class_);
+        else environment.define(stmt.slot, stmt.name.lexeme, class_);
         return null;
     }
 
@@ -110,27 +125,52 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     public Object visitVarDecStatement(VarDecStatement stmt) {
         Object value = null;
         if (stmt.initializer != null) value = evaluate(stmt.initializer);
-        environment.define(stmt.name.lexeme, value);
+        // Each time the declaration runs, closures capturing the variable get a new box
+        environment.define(stmt.slot, stmt.name.lexeme, stmt.boxed ? new Upvalue(value) : value);
         return null;
     }
 
     @Override
     public Object visitBlockStatement(BlockStatement stmt) {
+        if (!stmt.ownEnvironment){
+            for (Statement statement : stmt.statements){
+                ReturnValue ret = evaluate(statement);
+                if (ret != null) return ret;
+            }
+            return null;
+        }
+
         // Setup new environment
         Environment superEnvironment = environment;
-        environment = new Environment(environment);
+        environment = new Environment(environment, stmt.localCount);
 
+        ReturnValue ret = null;
         for (Statement statement : stmt.statements){
-            evaluate(statement);
+            ret = evaluate(statement);
+            if (ret != null) break;
         }
 
         // Change environment back
         environment = superEnvironment;
-        return null;
+        return ret;
     }
 
     @Override
     public Object visitReturnStatement(ReturnStatement stmt){
+        if (stmt.tailCall){
+            CallExpression expr = (CallExpression) stmt.returnValue;
+            ArrayList<Object> arguments = new ArrayList<>();
+            for (Expression argument: expr.arguments){
+                arguments.add(evaluate(argument));
+            }
+
+            if (expr.callee instanceof GetExpression){
+                GetExpression method = (GetExpression) expr.callee;
+                return tailInvoke(stmt.keyword, method.name, evaluate(method.object), expr.closingParen, arguments, this, method.methodCache, expr.initCache);
+            }
+            return tailCall(stmt.keyword, expr.closingParen, evaluate(expr.callee), arguments, this, expr.initCache);
+        }
+
         Object value = null;
         boolean noReturnValue = true;
         if (stmt.returnValue != null) {
@@ -138,14 +178,14 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
             noReturnValue = false;
         }
 
-        throw new Return(stmt.keyword, value, noReturnValue);
+        return new ReturnValue(stmt.keyword, value, noReturnValue);
     }
 
     // VISITOR PATTERN visit methods for expression
 
     @Override
     public Object visitThisExpression(ThisExpression expr){
-        if (locals.get(expr) != null) return environment.getAt(expr.keyword, locals.get(expr));
+        if (expr.depth >= 0 || expr.upvalue >= 0) return getThis(expr, environment);
         else throw Error.createRuntimeError(expr.keyword, "'this' keyword cannot be used outside of a class");
     }
 
@@ -155,72 +195,52 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         for (Expression expression : expr.elements){
             values.add(evaluate(expression));
         }
-        return new LoxArray(values.size(), values);
+        return new LoxArray(values);
     }
 
     @Override
     public Object visitArrayElementExpression(ArrayElementExpression expr){
-        Object lhs = evaluate(expr.arrayExpression);
-        if (!(lhs instanceof LoxArray)) throw Error.createRuntimeError(expr.leftBracket, "Can access element of LoxArray type object only");
-
-        Object index = evaluate(expr.index);
-        if (!(index instanceof Double)) throw Error.createRuntimeError(expr.leftBracket, "Element index has to be a number");
-        
-        if (((Double)index) % 1 != 0 || ((Double)index) < 0 || ((Double)index >= ((LoxArray)lhs).capacity)) throw Error.createRuntimeError(expr.leftBracket, "Invalid index to access array element");
-        return ((LoxArray)lhs).values.get(((Double)index).intValue());
+        LoxArray array = checkIfArrayToAccess(expr.leftBracket, evaluate(expr.arrayExpression));
+        int index = checkElementIndex(expr.leftBracket, array, evaluate(expr.index));
+        return array.get(index);
     }
 
     @Override
     public Object visitArrayElementAssignmentExpression(ArrayElementAssignmentExpression expr){
 
-        Object lhs = evaluate(expr.arrayExpression);
-        if (!(lhs instanceof LoxArray)) throw Error.createRuntimeError(expr.leftBracket, "Can assign element of LoxArray type object only");
-        LoxArray array = (LoxArray) lhs;
-
-        Object index = evaluate(expr.index);
-        if (!(index instanceof Double)) throw Error.createRuntimeError(expr.leftBracket, "Element index has to be a number");
-        Double ind = (Double) index;
-        if (ind % 1 != 0 || ind < 0 || (ind > array.capacity)) throw Error.createRuntimeError(expr.leftBracket, "Invalid index to assign to an array");
+        LoxArray array = checkIfArrayToAssign(expr.leftBracket, evaluate(expr.arrayExpression));
+        int index = checkAssignmentIndex(expr.leftBracket, array, evaluate(expr.index));
 
         Object value = evaluate(expr.value);
-
-        if (ind == array.capacity){
-            array.values.add(value);
-        } else {
-            array.values.set(ind.intValue(), value);
-        }
-        array.updateCapacity();
-
+        setElement(array, index, value);
         return value;
     }
 
     @Override
     public Object visitSuperExpression(SuperExpression expr){
-        LoxClass superclass = (LoxClass) environment.getAt(expr.keyword, locals.get(expr));
-        LoxInstance instance = (LoxInstance) environment.getThis();
-
-        LoxFunction method = superclass.findMethod(expr.method.lexeme);
-        if (method == null) throw Error.createRuntimeError(expr.keyword, String.format("Undefined method name `%s` of superclass", expr.method.lexeme));
-
-        return method.bind(instance);
+        return getSuperMethod(expr, environment);
     }
 
     @Override
     public Object visitVariableExpression(VariableExpression expr) {
-        if (locals.get(expr) == null){
+        if (expr.upvalue >= 0){
+            return environment.getUpvalue(expr.upvalue);
+        } else if (expr.depth < 0){
             return globals.get(expr.name);
+        } else if (expr.boxed){
+            return environment.getBoxedAt(expr.depth, expr.slot);
         } else {
-            return environment.getAt(expr.name, locals.get(expr));
+            return environment.getAt(expr.depth, expr.slot);
         }
     }
 
     @Override
     public Object visitAssignmentExpression(AssignmentExpression expr){
         Object value = evaluate(expr.value);
-        Integer depth = locals.get(expr);
-
-        if (depth == null) globals.assign(expr.name, value);
-        else environment.assignAt(expr.name, value, depth);
+        if (expr.upvalue >= 0) environment.setUpvalue(expr.upvalue, value);
+        else if (expr.depth < 0) globals.assign(expr.name, value);
+        else if (expr.boxed) environment.assignBoxedAt(expr.depth, expr.slot, value);
+        else environment.assignAt(expr.depth, expr.slot, value);
         return value;
     }
 
@@ -246,45 +266,31 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Object visitBinaryExpression(BinaryExpression expr) {
+        // Arithmetic the Resolver proved numeric runs on primitive doubles and is boxed only once, here
+        if (expr.numeric) return evaluateDouble(expr);
+
+        if (expr.left.numeric && expr.right.numeric){
+            switch (expr.operator.type) {
+                case LT:
+                    return evaluateDouble(expr.left) < evaluateDouble(expr.right);
+                case GT:
+                    return evaluateDouble(expr.left) > evaluateDouble(expr.right);
+                case LEQ:
+                    return evaluateDouble(expr.left) <= evaluateDouble(expr.right);
+                case GEQ:
+                    return evaluateDouble(expr.left) >= evaluateDouble(expr.right);
+                default:
+                    break;
+            }
+        }
+
         Object leftValue = evaluate(expr.left);
         Object rightValue = evaluate(expr.right);
 
         switch (expr.operator.type) {
+            // -, * and / are always numeric and handled by evaluateDouble
             case ADD:
-                if ((leftValue instanceof Double) && (rightValue instanceof Double)){
-                    return (double)leftValue + (double)rightValue;
-                } else if ((leftValue instanceof String) && (rightValue instanceof String)){
-                    return (String)leftValue + (String)rightValue;
-                } else if ((leftValue instanceof Double) && (rightValue instanceof String)){
-                    return stringify(leftValue) + (String)rightValue;
-                } else if ((rightValue instanceof Double) && (leftValue instanceof String)){
-                    return (String)leftValue + stringify(rightValue); 
-
-                } else if ((rightValue instanceof LoxArray) && (leftValue instanceof LoxArray)){
-
-                    ArrayList<Object> newArrayList = new ArrayList<>();
-                    newArrayList.addAll(((LoxArray)leftValue).values);
-                    newArrayList.addAll(((LoxArray)rightValue).values);
-                    return new LoxArray(newArrayList.size(), newArrayList);
-
-                }
-
-                RuntimeError err = new RuntimeError(expr.operator, "Both numbers, both strings, both arrays, or one of each number and string expected");
-                throw err;
-
-            case SUBTRACT:
-                checkIfOperandsAreNumbers(expr.operator, leftValue, rightValue);
-                return (double)leftValue - (double)rightValue;
-
-            case MULTIPLY:
-                checkIfOperandsAreNumbers(expr.operator, leftValue, rightValue);
-                return (double)leftValue * (double)rightValue;
-
-            case DIVIDE:
-                // Check for rigthValue if it is zero too
-                checkIfOperandsAreNumbers(expr.operator, leftValue, rightValue);
-                checkIfRightValueZero(expr.operator, rightValue);
-                return (double)leftValue / (double)rightValue;
+                return add(expr.operator, leftValue, rightValue);
 
             case LT:
                 checkIfOperandsAreNumbers(expr.operator, leftValue, rightValue);
@@ -312,14 +318,11 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Object visitUnaryExpression(UnaryExpression expr) {
-        Object rightValue = evaluate(expr.expression);
-
         switch (expr.operator.type) {
             case SUBTRACT:
-                checkIfOperandIsANumber(expr.operator, rightValue);
-                return -(double) rightValue;
+                return evaluateDouble(expr);
             case NOT:
-                return ! truthOrFalse(rightValue);
+                return ! truthOrFalse(evaluate(expr.expression));
             default:
                 return null;
         }
@@ -337,57 +340,40 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
             arguments.add(evaluate(argument));
         }
 
-        Object callee = evaluate(expr.callee);
-        if (!(callee instanceof LoxCallable)) throw Error.createRuntimeError(expr.closingParen, "Object is not callable");
-
-        LoxCallable function = (LoxCallable) callee;
-
-        if (function.arity() != arguments.size())
-            throw Error.createRuntimeError(expr.closingParen, String.format("Expected %d argument(s), but got %d of them", function.arity(), arguments.size()));
+        // Lox functions are called right here rather than through call(), so a Lox call adds as few Java frames as possible
+        if (expr.callee instanceof GetExpression){
+            GetExpression property = (GetExpression) expr.callee;
+            Object object = evaluate(property.object);
+            LoxFunction method = methodToInvoke(object, property.methodCache);
+            if (method != null){
+                checkArity(expr.closingParen, method, arguments.size());
+                return method.call((LoxInstance) object, this, arguments);
+            }
+            return call(expr.closingParen, getProperty(property.name, object, property.methodCache), arguments, this, expr.initCache);
+        }
 
-        Object functionCall = null;
-        try {
-            functionCall = function.call(this, arguments);
-    
-        } catch (NumberFormatException e) {
-            // For "number" native function
-            throw Error.createRuntimeError(expr.closingParen, "Cannot convert String to Number");
-        } catch(IllegalArgumentException e){
-            // For 'len' native function
-            throw Error.createRuntimeError(expr.closingParen, "Argument provided is illegal");
+        Object callee = evaluate(expr.callee);
+        if (callee instanceof LoxFunction){
+            LoxFunction function = (LoxFunction) callee;
+            checkArity(expr.closingParen, function, arguments.size());
+            return function.call(function.receiver, this, arguments);
         }
-        return functionCall;
+        return call(expr.closingParen, callee, arguments, this, expr.initCache);
     }
 
     @Override
     public Object visitGetExpression(GetExpression expr){
-        Object object = evaluate(expr.object);
-        if (object instanceof LoxInstance){
-            return ((LoxInstance) object).get(expr.name);
-
-        } else if (object instanceof LoxClass){
-            LoxFunction staticMethod =  ((LoxClass) object).findStaticMethod(expr.name.lexeme);
-            if (staticMethod == null) throw Error.createRuntimeError(expr.name, "Undefined static method");
-            else return staticMethod;
-        } 
-        // Error since not an instance
-        throw Error.createRuntimeError(expr.name, "Cannot access properties of a non-instance");
+        return getProperty(expr.name, evaluate(expr.object), expr.methodCache);
     }
 
     @Override
     public Object visitSetExpression(SetExpression expr){
 
-        Object object = evaluate(expr.object);
-
-        if (object instanceof LoxInstance){
-            Object value = evaluate(expr.value);
-            ((LoxInstance) object).set(expr.name, value);
-            return value;
+        LoxInstance instance = checkIfInstance(expr.name, evaluate(expr.object));
 
-        } else{
-            // Error since not an instance
-            throw Error.createRuntimeError(expr.name, "Cannot modify properties of a non-instance");
-        }
+        Object value = evaluate(expr.value);
+        instance.set(expr.name, value, expr.ownMethodCache);
+        return value;
     }
 
     @Override
@@ -397,56 +383,309 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     // HELPER METHODS 
 
-    private Object evaluate(Statement stmt){
-        return stmt.accept(this);
+    private ReturnValue evaluate(Statement stmt){
+        return (ReturnValue) stmt.accept(this);
     }
 
     private Object evaluate(Expression expr){
         return expr.accept(this);
     }
 
-    private boolean truthOrFalse(Object value){
+    // Only for expressions the Resolver marked numeric, the result never needs a Double
+    private double evaluateDouble(Expression expr){
+        if (expr instanceof BinaryExpression) return evaluateDouble((BinaryExpression) expr);
+        if (expr instanceof UnaryExpression) return evaluateDouble((UnaryExpression) expr);
+        if (expr instanceof GroupingExpression) return evaluateDouble(((GroupingExpression) expr).expression);
+        return (double) ((LiteralExpression) expr).value;
+    }
+
+    private double evaluateDouble(BinaryExpression expr){
+        double leftValue, rightValue;
+        if (expr.left.numeric && expr.right.numeric){
+            leftValue = evaluateDouble(expr.left);
+            rightValue = evaluateDouble(expr.right);
+        } else {
+            Object left = evaluate(expr.left);
+            Object right = evaluate(expr.right);
+            checkIfOperandsAreNumbers(expr.operator, left, right);
+            leftValue = (double) left;
+            rightValue = (double) right;
+        }
+
+        switch (expr.operator.type) {
+            case ADD:
+                return leftValue + rightValue;
+            case SUBTRACT:
+                return leftValue - rightValue;
+            case MULTIPLY:
+                return leftValue * rightValue;
+            case DIVIDE:
+                checkIfRightValueZero(expr.operator, rightValue);
+                return leftValue / rightValue;
+            // Unreachable
+            default:
+                return 0;
+        }
+    }
+
+    private double evaluateDouble(UnaryExpression expr){
+        if (expr.expression.numeric) return -evaluateDouble(expr.expression);
+
+        Object rightValue = evaluate(expr.expression);
+        checkIfOperandIsANumber(expr.operator, rightValue);
+        return -(double) rightValue;
+    }
+
+    // Helpers shared by every execution engine so they all agree on Lox semantics and error messages
+
+    static boolean truthOrFalse(Object value){
         if (value == null) return false;
         if (value instanceof Boolean) return (boolean)value;
         return true;
     }
 
-    private boolean isEqual(Object left, Object right){
+    // Loop conditions the DeadCodeEliminator turned into `true` (or `for(;;)`) do not need evaluating
+    static boolean isAlwaysTrue(Expression condition){
+        return condition instanceof LiteralExpression && Boolean.TRUE.equals(((LiteralExpression) condition).value);
+    }
+
+    static boolean isEqual(Object left, Object right){
         if (left == null && right == null) return true;
         if (left == null) return false;
         if (left == right) return true;
+        if (left instanceof LoxString || right instanceof LoxString){
+            return isString(left) && isString(right) && left.toString().equals(right.toString());
+        }
 
         return left.equals(right);
     }
 
-    private boolean isNotEqual(Object left, Object right){
+    static boolean isString(Object value){
+        return value instanceof String || value instanceof LoxString;
+    }
+
+    static boolean isNotEqual(Object left, Object right){
         return ! isEqual(left, right);
     }
 
-    private void checkIfOperandIsANumber(Token token, Object value){
+    static void checkIfOperandIsANumber(Token token, Object value){
         if (value instanceof Double) return;
-        throw createOperandError(token, "Number Literal expected");
+        throw createNumberOperandError(token);
     }
 
-    private void checkIfOperandsAreNumbers(Token token, Object a, Object b){
+    static void checkIfOperandsAreNumbers(Token token, Object a, Object b){
         if (a instanceof Double && b instanceof Double) return;
-        throw createOperandError(token, "Numbers expected as operands");
+        throw createNumberOperandsError(token);
+    }
+
+    static RuntimeError createNumberOperandError(Token token){
+        return createOperandError(token, "Number Literal expected");
     }
 
-    private void checkIfRightValueZero(Token token, Object rightValue){
-        if ((double) rightValue != (double) 0) return;
-        throw createOperandError(token, "Second operand cannot be Zero");
+    static RuntimeError createNumberOperandsError(Token token){
+        return createOperandError(token, "Numbers expected as operands");
     }
 
-    private RuntimeError createOperandError(Token token, String message){
+    static void checkIfRightValueZero(Token token, double rightValue){
+        if (rightValue != 0) return;
+        throw createZeroDivisorError(token);
+    }
+
+    static RuntimeError createZeroDivisorError(Token token){
+        return createOperandError(token, "Second operand cannot be Zero");
+    }
+
+    static void reportReturnOutsideFunction(ReturnValue ret){
+        Error.reportRuntimeError(new RuntimeError(ret.keyword, "Return not allowed"));
+    }
+
+    static RuntimeError createOperandError(Token token, String message){
         RuntimeError err = new RuntimeError(token, message);
         Error.reportOperandError(err.token, err.message);
         return err;
     }
 
+    static Object add(Token operator, Object leftValue, Object rightValue){
+        if ((leftValue instanceof Double) && (rightValue instanceof Double)){
+            return (double)leftValue + (double)rightValue;
+        } else if (isString(leftValue) && isString(rightValue)){
+            return LoxString.concat(leftValue, rightValue);
+        } else if ((leftValue instanceof Double) && isString(rightValue)){
+            return LoxString.concat(stringify(leftValue), rightValue);
+        } else if ((rightValue instanceof Double) && isString(leftValue)){
+            return LoxString.concat(leftValue, stringify(rightValue));
+
+        } else if ((rightValue instanceof LoxArray) && (leftValue instanceof LoxArray)){
+            return ((LoxArray)leftValue).concat((LoxArray)rightValue);
+        }
+
+        RuntimeError err = new RuntimeError(operator, "Both numbers, both strings, both arrays, or one of each number and string expected");
+        throw err;
+    }
+
+    static void checkArity(Token closingParen, LoxCallable function, int argumentCount){
+        checkArity(closingParen, function.arity(), argumentCount);
+    }
+
+    static void checkArity(Token closingParen, int arity, int argumentCount){
+        if (arity != argumentCount)
+            throw Error.createRuntimeError(closingParen, String.format("Expected %d argument(s), but got %d of them", arity, argumentCount));
+    }
+
+    // Classes take their init method from the call site's inline cache instead of looking it up for the arity check and the call
+    static Object call(Token closingParen, Object callee, ArrayList<Object> arguments, Interpreter interpreter, InlineCache initCache){
+        if (!(callee instanceof LoxCallable)) throw Error.createRuntimeError(closingParen, "Object is not callable");
+
+        if (callee instanceof LoxClass){
+            LoxFunction init = initCache.lookup((LoxClass) callee);
+            checkArity(closingParen, (init == null) ? 0 : init.arity(), arguments.size());
+            return ((LoxClass) callee).instantiate(init, interpreter, arguments);
+        }
+
+        LoxCallable function = (LoxCallable) callee;
+        checkArity(closingParen, function, arguments.size());
+
+        return callFunction(function, interpreter, arguments, closingParen);
+    }
+
+    static Object callFunction(LoxCallable function, Interpreter interpreter, ArrayList<Object> arguments, Token closingParen){
+        try {
+            return function.call(interpreter, arguments);
+
+        } catch (NumberFormatException e) {
+            // For "number" native function
+            throw Error.createRuntimeError(closingParen, "Cannot convert String to Number");
+        } catch(IllegalArgumentException e){
+            // For 'len' native function
+            throw Error.createRuntimeError(closingParen, "Argument provided is illegal");
+        }
+    }
+
+    // `object.name(arguments)`: methods are called with `this` supplied directly, the bound method is only created
+    // when the property is used as a value. Null when `object` is not an instance or the property is not one of its methods
+    static LoxFunction methodToInvoke(Object object, InlineCache methodCache){
+        return (object instanceof LoxInstance) ? ((LoxInstance) object).methodToInvoke(methodCache) : null;
+    }
+
+    // `return callee(arguments)` in tail position: a Lox function is left for LoxFunction.call to run in place of the returning one,
+    // anything else (natives, classes) is called right away
+    static ReturnValue tailCall(Token keyword, Token closingParen, Object callee, ArrayList<Object> arguments, Interpreter interpreter, InlineCache initCache){
+        if (callee instanceof LoxFunction){
+            LoxFunction function = (LoxFunction) callee;
+            checkArity(closingParen, function, arguments.size());
+            return new ReturnValue(keyword, function, function.receiver, arguments);
+        }
+        return new ReturnValue(keyword, call(closingParen, callee, arguments, interpreter, initCache), false);
+    }
+
+    // `return object.name(arguments)` in tail position, see methodToInvoke
+    static ReturnValue tailInvoke(Token keyword, Token name, Object object, Token closingParen, ArrayList<Object> arguments, Interpreter interpreter, InlineCache methodCache, InlineCache initCache){
+        LoxFunction method = methodToInvoke(object, methodCache);
+        if (method != null){
+            checkArity(closingParen, method, arguments.size());
+            return new ReturnValue(keyword, method, (LoxInstance) object, arguments);
+        }
+
+        return tailCall(keyword, closingParen, getProperty(name, object, methodCache), arguments, interpreter, initCache);
+    }
+
+    static Object getProperty(Token name, Object object, InlineCache methodCache){
+        if (object instanceof LoxInstance){
+            return ((LoxInstance) object).get(name, methodCache);
+
+        } else if (object instanceof LoxClass){
+            LoxFunction staticMethod =  ((LoxClass) object).findStaticMethod(name.lexeme);
+            if (staticMethod == null) throw Error.createRuntimeError(name, "Undefined static method");
+            else return staticMethod;
+        }
+        // Error since not an instance
+        throw Error.createRuntimeError(name, "Cannot access properties of a non-instance");
+    }
+
+    static LoxInstance checkIfInstance(Token name, Object object){
+        if (object instanceof LoxInstance) return (LoxInstance) object;
+        // Error since not an instance
+        throw Error.createRuntimeError(name, "Cannot modify properties of a non-instance");
+    }
+
+    // `this` where the Resolver found it: a slot of the method's environment, or an upvalue for functions inside the method
+    static Object getThis(ThisExpression expr, Environment environment){
+        if (expr.upvalue >= 0) return environment.getUpvalue(expr.upvalue);
+        if (expr.boxed) return environment.getBoxedAt(expr.depth, expr.slot);
+        return environment.getAt(expr.depth, expr.slot);
+    }
+
+    static LoxFunction getSuperMethod(SuperExpression expr, Environment environment){
+        // "super" is always captured from the environment the class created around its methods
+        LoxClass superclass = (LoxClass) environment.getUpvalue(expr.upvalue);
+        return getSuperMethod(expr, superclass, (LoxInstance) getThis(expr.receiver, environment));
+    }
+
+    static LoxFunction getSuperMethod(SuperExpression expr, LoxClass superclass, LoxInstance instance){
+        LoxFunction method = superclass.findMethod(expr.method.lexeme);
+        if (method == null) throw Error.createRuntimeError(expr.keyword, String.format("Undefined method name `%s` of superclass", expr.method.lexeme));
+
+        return method.bind(instance);
+    }
+
+    static LoxArray checkIfArrayToAccess(Token leftBracket, Object object){
+        if (object instanceof LoxArray) return (LoxArray) object;
+        throw Error.createRuntimeError(leftBracket, "Can access element of LoxArray type object only");
+    }
+
+    static LoxArray checkIfArrayToAssign(Token leftBracket, Object object){
+        if (object instanceof LoxArray) return (LoxArray) object;
+        throw Error.createRuntimeError(leftBracket, "Can assign element of LoxArray type object only");
+    }
+
+    static int checkElementIndex(Token leftBracket, LoxArray array, Object index){
+        if (!(index instanceof Double)) throw Error.createRuntimeError(leftBracket, "Element index has to be a number");
+        return checkElementIndex(leftBracket, array, (double) index);
+    }
+
+    // For an index the VM holds unboxed
+    static int checkElementIndex(Token leftBracket, LoxArray array, double ind){
+        if (ind % 1 != 0 || ind < 0 || ind >= array.capacity) throw Error.createRuntimeError(leftBracket, "Invalid index to access array element");
+        return (int) ind;
+    }
+
+    // Assigning at index == capacity appends to the array
+    static int checkAssignmentIndex(Token leftBracket, LoxArray array, Object index){
+        if (!(index instanceof Double)) throw Error.createRuntimeError(leftBracket, "Element index has to be a number");
+        return checkAssignmentIndex(leftBracket, array, (double) index);
+    }
+
+    static int checkAssignmentIndex(Token leftBracket, LoxArray array, double ind){
+        if (ind % 1 != 0 || ind < 0 || ind > array.capacity) throw Error.createRuntimeError(leftBracket, "Invalid index to assign to an array");
+        return (int) ind;
+    }
+
+    static void setElement(LoxArray array, int index, Object value){
+        if (index == array.capacity){
+            array.add(value);
+        } else {
+            array.set(index, value);
+        }
+    }
+
+    private static LoxArray arrayArgument(Object argument){
+        if (!(argument instanceof LoxArray)) throw new IllegalArgumentException();
+        return (LoxArray) argument;
+    }
+
+    // Slice bounds go from 0 to the # of elements
+    private static int sliceIndex(LoxArray array, Object index){
+        if (!(index instanceof Double)) throw new IllegalArgumentException();
+
+        double ind = (Double) index;
+        if (ind % 1 != 0 || ind < 0 || ind > array.capacity) throw new IllegalArgumentException();
+        return (int) ind;
+    }
+
     public static String stringify(Object value){
 
         if (value instanceof String) return (String)value;
+        if (value instanceof LoxString) return value.toString();
         if (value == null) return "nil";
         if (value instanceof Boolean) return ((boolean) value == true) ? "true" : "false";
 
@@ -456,11 +695,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     }
 
-    void resolve(Expression expr, int depth){
-        locals.put(expr, depth);
-    }
-
-    private void addNativeFunctions(){
+    static void addNativeFunctions(Environment environment){
 
             // Built-in `len` function for length of string / arrays
             environment.define("len",
@@ -477,6 +712,8 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
                         return (double) (((LoxArray)argument).capacity);
                     } else if (argument instanceof String){
                         return (double) (((String)argument).length());
+                    } else if (argument instanceof LoxString){
+                        return (double) (((LoxString)argument).length);
                     } else throw new IllegalArgumentException();
                 }
 
@@ -485,6 +722,65 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
                 }
             });
 
+            // Built-in `push` function appending a value to an array
+            environment.define("push",
+                new LoxCallable(){
+
+                @Override
+                public int arity(){ return 2; }
+
+                @Override
+                public Object call(Interpreter interpreter, ArrayList<Object> arguments) {
+                    LoxArray array = arrayArgument(arguments.get(0));
+                    array.add(arguments.get(1));
+                    return (double) array.capacity;
+                }
+
+                public String toString(){
+                    return "<native fn: push -> appends the value to the array and returns its new # of elements>";
+                }
+            });
+
+            // Built-in `pop` function removing the last element of an array
+            environment.define("pop",
+                new LoxCallable(){
+
+                @Override
+                public int arity(){ return 1; }
+
+                @Override
+                public Object call(Interpreter interpreter, ArrayList<Object> arguments) {
+                    LoxArray array = arrayArgument(arguments.get(0));
+                    if (array.capacity == 0) throw new IllegalArgumentException();
+                    return array.removeLast();
+                }
+
+                public String toString(){
+                    return "<native fn: pop -> removes and returns the last element of the array>";
+                }
+            });
+
+            // Built-in `slice` function, the slice shares the elements of the array until either is modified
+            environment.define("slice",
+                new LoxCallable(){
+
+                @Override
+                public int arity(){ return 3; }
+
+                @Override
+                public Object call(Interpreter interpreter, ArrayList<Object> arguments) {
+                    LoxArray array = arrayArgument(arguments.get(0));
+                    int start = sliceIndex(array, arguments.get(1));
+                    int end = sliceIndex(array, arguments.get(2));
+                    if (start > end) throw new IllegalArgumentException();
+                    return array.slice(start, end);
+                }
+
+                public String toString(){
+                    return "<native fn: slice -> returns the elements of the array from the start index up to (not including) the end index>";
+                }
+            });
+
             // Predefined clock function
             environment.define("clock",
                 new LoxCallable(){
@@ -512,6 +808,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
                 @SuppressWarnings("all")
                 @Override
                 public Object call(Interpreter interpreter, ArrayList<Object> arguments) {
+                    Output.flush();
                     Scanner scanner = new Scanner(System.in);
                     String input = "";
                     if (scanner.hasNext()) input = scanner.nextLine();
@@ -1,7 +1,9 @@
 package lox.lox;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Scanner;
 import java.util.ArrayList;
@@ -11,22 +13,107 @@ import lox.scanner.*;
 
 public class Lox{
 
-    public static void main(String[] commandLineArguments) throws IOException{
-
-        if (commandLineArguments.length == 1){
-            runFile(commandLineArguments[0]);
-
-        } else if (commandLineArguments.length == 0){
-            runPrompt();
+    // Run on the bytecode VM instead of the tree walking interpreter
+    private static boolean useVM = false;
+    // Run as a tree of executable nodes instead of the tree walking interpreter
+    private static boolean useTree = false;
+    // Load/store the resolved statements of a file in a cache next to it
+    private static boolean useASTCache = false;
+    // Sample the Lox call stack while the file runs and write it out next to the file
+    private static boolean profile = false;
+    // Print the optimized program instead of running it
+    private static boolean dumpAST = false;
+    // Stack of the thread running Lox, calls that are not tail calls still nest Java calls on the interpreter and --tree
+    private static final long STACK_SIZE = 256L << 20;
+
+    public static void main(String[] commandLineArguments) throws IOException, InterruptedException{
+
+        ArrayList<String> arguments = new ArrayList<>();
+        long bufferSize = Output.DEFAULT_BUFFER_SIZE;
+        long flushInterval = Output.DEFAULT_FLUSH_INTERVAL_MILLIS;
+        for (String argument : commandLineArguments){
+            if (argument.equals("--vm")) useVM = true;
+            else if (argument.equals("--tree")) useTree = true;
+            else if (argument.equals("--line-flush")) Output.lineFlush = true;
+            else if (argument.startsWith("--buffer-size=")) bufferSize = numberOption(argument);
+            else if (argument.startsWith("--flush-interval=")) flushInterval = numberOption(argument);
+            else if (argument.equals("--ast-cache")) useASTCache = true;
+            else if (argument.equals("--profile")) profile = true;
+            else if (argument.equals("--dump-ast")) dumpAST = true;
+            // Has to be set before Stats is initialized, Stats.PROPERTY is a constant and does not initialize it
+            else if (argument.equals("--stats")) System.setProperty(Stats.PROPERTY, "true");
+            else if (argument.startsWith("--")){
+                Error.reportUsageError();
+                return;
+            } else arguments.add(argument);
+        }
 
-        } else {
+        // The buffer has to hold at least one character
+        if (arguments.size() > 1 || bufferSize < 1 || bufferSize > Integer.MAX_VALUE || flushInterval < 0){
             Error.reportUsageError();
+            return;
+        }
+        Output.setBufferSize((int) bufferSize);
+        Output.setFlushInterval(flushInterval);
+
+        // The program runs on its own thread, the main thread's stack size can only be set with -Xss
+        Throwable[] failure = new Throwable[1];
+        Thread runner = new Thread(null, () -> {
+            try {
+                if (arguments.size() == 1) runFile(arguments.get(0));
+                else runPrompt();
+            } catch (IOException | RuntimeException | java.lang.Error e){
+                failure[0] = e;
+            }
+        }, "lox", STACK_SIZE);
+        runner.start();
+        runner.join();
+
+        if (failure[0] instanceof IOException) throw (IOException) failure[0];
+        if (failure[0] instanceof RuntimeException) throw (RuntimeException) failure[0];
+        if (failure[0] != null) throw (java.lang.Error) failure[0];
+    }
+
+    // Value of an option written as --name=<number>, -1 if it is not a whole number
+    private static long numberOption(String argument){
+        try {
+            return Long.parseLong(argument.substring(argument.indexOf('=') + 1));
+        } catch (NumberFormatException e){
+            return -1;
         }
     }
 
+    // Files are memory mapped and parsed while they are scanned, without holding a copy of the source or all of its tokens
     private static void runFile(String filePath) throws IOException{
-        String entire_file = new String(Files.readAllBytes(Paths.get(filePath)));
-        run(entire_file, new Environment());
+        Path path = Paths.get(filePath);
+        ASTCache cache = useASTCache ? new ASTCache(path) : null;
+
+        ArrayList<Statement> statements = (cache == null) ? null : cache.load();
+        if (statements == null){
+            Charset charset = Charset.defaultCharset();
+            if (MappedSource.supports(charset)){
+                statements = parse(new LoxScanner(MappedSource.map(path, charset)), true);
+            } else {
+                statements = parse(new LoxScanner(new String(Files.readAllBytes(path), charset)), false);
+            }
+
+            if (statements != null && cache != null) cache.store(statements);
+        }
+
+        if (dumpAST){
+            if (statements != null) dump(statements);
+            return;
+        }
+
+        if (profile && statements != null){
+            Profiler.enabled = true;
+            Profiler.start(path.getFileName().toString());
+            try {
+                run(statements, new Environment());
+            } finally {
+                Profiler.stop(path.resolveSibling(path.getFileName() + ".collapsed"));
+            }
+        } else run(statements, new Environment());
     }
 
     private static void runPrompt(){
@@ -42,7 +129,9 @@ public class Lox{
 
             if (user_input.equals("exit")) break;
 
-            run(user_input, env);
+            ArrayList<Statement> statements = parse(new LoxScanner(user_input), false);
+            if (dumpAST && statements != null) dump(statements);
+            else run(statements, env);
             Error.hadError = false;  
             Error.hadRuntimeError = false;  
         }
@@ -50,22 +139,53 @@ public class Lox{
         scanner.close();
     }
 
-    private static void run(String input, Environment env){
-        LoxScanner scanner = new LoxScanner(input);
-        if (Error.hadError) return;
-
-        Parser parser = new Parser(scanner.scanTokens());
+    // The optimized and resolved statements, null if there were errors
+    // The program is resolved as written first, so errors in code the optimizer removes are still reported
+    private static ArrayList<Statement> parse(LoxScanner scanner, boolean streamTokens){
+        Parser parser = streamTokens ? new Parser(scanner) : new Parser(scanner.scanTokens());
         ArrayList<Statement> statements = parser.parse();
-        if (Error.hadError) return;
+        if (Error.hadError) return null;
 
-        Interpreter interpreter = new Interpreter(statements, env);
-
-        Resolver resolver = new Resolver(interpreter, statements);
+        Resolver resolver = new Resolver(statements);
         resolver.resolve();
 
-        if (Error.hadError) return;
+        if (Error.hadError) return null;
+
+        ArrayList<Statement> optimized = Optimizer.standard().optimize(statements);
+        if (optimized != statements) new Resolver(optimized).resolve();
+        return optimized;
+    }
+
+    private static void dump(ArrayList<Statement> statements){
+        System.out.print(new ASTPrinter().print(statements));
+        System.out.flush();
+    }
+
+    private static void run(ArrayList<Statement> statements, Environment env){
+        if (statements == null) return;
 
-        interpreter.interpret();
+        try {
+            execute(statements, env);
+        } finally {
+            Output.flush();
+            if (Stats.ENABLED) Stats.report();
+        }
+    }
+
+    private static void execute(ArrayList<Statement> statements, Environment env){
+        if (useVM){
+            Chunk script = new Compiler(statements).compile();
+            if (Error.hadError) return;
+
+            VM vm = new VM(env);
+            vm.interpret(script);
+        } else if (useTree){
+            TreeInterpreter interpreter = new TreeInterpreter(statements, env);
+            interpreter.interpret();
+        } else {
+            Interpreter interpreter = new Interpreter(statements, env);
+            interpreter.interpret();
+        }
 
         return;
     }
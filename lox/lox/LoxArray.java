@@ -1,33 +1,191 @@
 package lox.lox;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
+// An array is a view (offset, capacity) into a Storage buffer that concatenation and slicing share instead of copying
+// Storage strategy: a buffer that only ever held numbers keeps them unboxed in a double[],
+// storing anything else switches it over to an Object[] for good
 class LoxArray{
 
-    ArrayList<Object> values;
+    // Indices below `used` belong to some array, the array ending at `used` may append past it in place
+    private static final class Storage {
+        double[] numbers;
+        Object[] objects;
+        int used;
+        // Set once a second array views the buffer, arrays then copy their elements before overwriting one
+        boolean shared = false;
+
+        Storage(double[] numbers, Object[] objects, int used){
+            this.numbers = numbers;
+            this.objects = objects;
+            this.used = used;
+        }
+
+        int length(){
+            return (numbers != null) ? numbers.length : objects.length;
+        }
+
+        Object get(int index){
+            if (numbers != null) return numbers[index];
+            return objects[index];
+        }
+
+        void put(int index, Object value){
+            if (numbers != null){
+                if (value instanceof Double){
+                    numbers[index] = (double) value;
+                    return;
+                }
+                generalize();
+            }
+            objects[index] = value;
+        }
+
+        void grow(int minimum){
+            int length = Math.max(minimum, Math.max(8, length() * 2));
+            if (numbers != null) numbers = Arrays.copyOf(numbers, length);
+            else objects = Arrays.copyOf(objects, length);
+        }
+
+        // Moves the elements to Object storage
+        private void generalize(){
+            objects = new Object[numbers.length];
+            for (int i=0; i < used; i++){
+                objects[i] = numbers[i];
+            }
+            numbers = null;
+        }
+    }
+
+    private Storage storage;
+    private int offset;
+    // Number of elements
     int capacity;
 
-    LoxArray(int initialCapacity, ArrayList<Object> values){
-        this.capacity = initialCapacity;
-        this.values = values; 
+    LoxArray(ArrayList<Object> values){
+        this.capacity = values.size();
+
+        boolean allNumbers = true;
+        for (Object value : values){
+            if (!(value instanceof Double)){
+                allNumbers = false;
+                break;
+            }
+        }
+
+        if (allNumbers){
+            double[] numbers = new double[capacity];
+            for (int i=0; i < capacity; i++){
+                numbers[i] = (double) values.get(i);
+            }
+            storage = new Storage(numbers, null, capacity);
+        } else {
+            storage = new Storage(null, values.toArray(), capacity);
+        }
+    }
+
+    private LoxArray(Storage storage, int offset, int capacity){
+        this.storage = storage;
+        this.offset = offset;
+        this.capacity = capacity;
+    }
+
+    Object get(int index){
+        return storage.get(offset + index);
+    }
+
+    void set(int index, Object value){
+        if (storage.shared) copyStorage(capacity);
+        storage.put(offset + index, value);
+    }
+
+    // Appends the value at index == capacity
+    void add(Object value){
+        reserve(1);
+        storage.put(offset + capacity, value);
+        capacity++;
+        storage.used = offset + capacity;
+    }
+
+    // Removes and returns the last element
+    Object removeLast(){
+        Object value = get(capacity - 1);
+        capacity--;
+        if (!storage.shared){
+            storage.used--;
+            if (storage.objects != null) storage.objects[offset + capacity] = null;
+        }
+        return value;
+    }
+
+    // New array holding the elements of this array followed by the ones of other
+    // Appends in place when this array ends where its buffer's elements end, so `a = a + [x]` does not copy a
+    LoxArray concat(LoxArray other){
+        if (Stats.ENABLED) Stats.arrayConcatenations++;
+        LoxArray result = view(0, capacity);
+        result.reserve(other.capacity);
+
+        Storage target = result.storage;
+        int end = result.offset + result.capacity;
+        if (target.numbers != null && other.storage.numbers != null){
+            System.arraycopy(other.storage.numbers, other.offset, target.numbers, end, other.capacity);
+            result.capacity += other.capacity;
+            target.used = end + other.capacity;
+        } else {
+            for (int i=0; i < other.capacity; i++){
+                result.add(other.get(i));
+            }
+        }
+        return result;
+    }
+
+    // Elements start (inclusive) to end (exclusive), sharing this array's buffer
+    LoxArray slice(int start, int end){
+        return view(start, end - start);
+    }
+
+    private LoxArray view(int start, int count){
+        storage.shared = true;
+        return new LoxArray(storage, offset + start, count);
+    }
+
+    // Makes room for `extra` more elements at the end of this array
+    private void reserve(int extra){
+        int end = offset + capacity;
+        if (storage.used != end){
+            // Another array owns the elements past this one's end
+            copyStorage(Math.max(8, (capacity + extra) * 2));
+        } else if (end + extra > storage.length()){
+            storage.grow(end + extra);
+        }
     }
 
-    void updateCapacity(){
-        capacity = values.size();
+    // Gives this array a buffer of its own with room for `length` elements
+    private void copyStorage(int length){
+        if (Stats.ENABLED) Stats.arrayCopies++;
+        if (storage.numbers != null){
+            storage = new Storage(Arrays.copyOfRange(storage.numbers, offset, offset + length), null, capacity);
+        } else {
+            Object[] objects = Arrays.copyOfRange(storage.objects, offset, offset + length);
+            Arrays.fill(objects, capacity, length, null);
+            storage = new Storage(null, objects, capacity);
+        }
+        offset = 0;
     }
 
     @Override
     public String toString(){
             StringBuilder sb = new StringBuilder();
             sb.append("[ ");
-            if (values.size() > 0)
-                sb.append(Interpreter.stringify(values.get(0)));
-            for (int i=1; i<values.size() ;i++){
+            if (capacity > 0)
+                sb.append(Interpreter.stringify(get(0)));
+            for (int i=1; i<capacity ;i++){
                 sb.append(", ");
-                sb.append(Interpreter.stringify(values.get(i)));
+                sb.append(Interpreter.stringify(get(i)));
             }
             sb.append(" ]");
             return sb.toString();
     }
 
-}
\ No newline at end of file
+}
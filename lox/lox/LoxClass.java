@@ -12,6 +12,10 @@ public class LoxClass implements LoxCallable{
     HashMap<String,LoxFunction> staticMethods;
     LoxClass superclass;
 
+    // Layout of instances without fields, and how many fields instances of the class ended up with so far
+    final Shape rootShape = new Shape();
+    int fieldCountHint = 0;
+
     LoxClass(Token name, LoxClass superclass, HashMap<String,LoxFunction> methods, HashMap<String,LoxFunction> staticMethods){
         this.superclass = superclass;
         this.name = name;
@@ -33,9 +37,15 @@ public class LoxClass implements LoxCallable{
 
     @Override
     public Object call(Interpreter interpreter, ArrayList<Object> arguments) {
+        return instantiate(this.findMethod("init"), interpreter, arguments);
+    }
+
+    // init is the initializer of this class (or null), already looked up by the caller
+    LoxInstance instantiate(LoxFunction init, Interpreter interpreter, ArrayList<Object> arguments){
+        if (Profiler.enabled) Profiler.enter(name);
         LoxInstance instance =  new LoxInstance(this);
-        LoxFunction init = this.findMethod("init");
-        if (init != null) init.bind(instance).call(interpreter, arguments);
+        if (init != null) init.call(instance, interpreter, arguments);
+        if (Profiler.enabled) Profiler.exit();
         return instance;
     }
 
@@ -1,19 +1,22 @@
 package lox.lox;
 
 import java.util.ArrayList;
-import lox.error.Return;
 import lox.error.Error;
 
 class LoxFunction implements LoxCallable{
 
-    private final FunctionStatement function;
-    private Environment closure;
-    private FuncType type;
+    final FunctionStatement function;
+    // Boxes of the enclosing variables the function uses, in the order the Resolver numbered them
+    final Upvalue[] upvalues;
+    final FuncType type;
+    // Instance a method is bound to, null for functions and unbound methods
+    final LoxInstance receiver;
 
-    LoxFunction(FunctionStatement function, Environment closure, FuncType type){
+    LoxFunction(FunctionStatement function, Upvalue[] upvalues, FuncType type, LoxInstance receiver){
         this.function = function;
-        this.closure = closure;
+        this.upvalues = upvalues;
         this.type = type;
+        this.receiver = receiver;
     }
 
     @Override
@@ -21,30 +24,66 @@ class LoxFunction implements LoxCallable{
         return function.parameters.size();
     }
 
+    // Only for callers that do not know the callee is a Lox function, call sites call the method below directly
     @Override
     public Object call(Interpreter interpreter, ArrayList<Object> arguments) {
-        Environment environment = interpreter.environment;
-        interpreter.environment = new Environment(closure);
+        return call(receiver, interpreter, arguments);
+    }
 
-        for (int i=0; i < arguments.size(); i++){
-            interpreter.environment.define(function.parameters.get(i).lexeme, arguments.get(i));
+    // Runs the function on `receiver`, which a method invoked directly gets without being bound first
+    // A tail call made by the body runs here next, in place of the call that made it, so tail recursion takes no Java stack
+    // Every Lox call goes through here, the frames it adds to a non-tail call are this one and the engine's execute
+    Object call(LoxInstance receiver, Interpreter interpreter, ArrayList<Object> arguments) {
+        LoxFunction function = this;
+        while (true){
+            if (Stats.ENABLED) Stats.calls++;
+            if (Profiler.enabled) Profiler.enter(function.function.name);
+            ReturnValue ret = function.execute(function.callEnvironment(receiver, arguments), interpreter);
+            if (Profiler.enabled) Profiler.exit();
+
+            if (ret == null || ret.tailCall == null) return function.completeCall(ret, receiver);
+            function = ret.tailCall;
+            receiver = ret.receiver;
+            arguments = ret.arguments;
+        }
+    }
+
+    // Runs the body in the call's environment
+    // The body's statements are run here rather than by visitBlockStatement, the body never opens an environment of its own
+    ReturnValue execute(Environment environment, Interpreter interpreter){
+        Environment enclosing = interpreter.environment;
+        interpreter.environment = environment;
+        ReturnValue ret = null;
+        for (Statement statement : ((BlockStatement) function.body).statements){
+            ret = (ReturnValue) statement.accept(interpreter);
+            if (ret != null) break;
         }
-        try {
-            interpreter.visitBlockStatement((BlockStatement) function.body);
+        interpreter.environment = enclosing;
+        return ret;
+    }
 
-        } catch (Return ret) {
-            interpreter.environment = environment;
+    // Environment a call runs in: `this` for methods, then the arguments, boxed when a closure captures them
+    Environment callEnvironment(LoxInstance receiver, ArrayList<Object> arguments){
+        Environment environment = new Environment(upvalues, function.localCount);
+        if (type == FuncType.METHOD || type == FuncType.INIT) environment.define("this", receiver);
+        for (int i=0; i < arguments.size(); i++){
+            environment.define(function.parameters.get(i).lexeme, arguments.get(i));
+        }
+        for (int slot : function.boxedSlots){
+            environment.box(slot);
+        }
+        return environment;
+    }
 
-            if (type == FuncType.INIT){
+    // Value of the call once the body finished, either by running off its end (ret is null) or through a return statement
+    Object completeCall(ReturnValue ret, LoxInstance receiver){
+        if (type == FuncType.INIT){
 
-                if (! ret.noReturnValue && ret.returnValue != closure.getThis()) throw Error.createRuntimeError(ret.token, "Cannot return this kind of value from init method");
-                return closure.getThis();
+            if (ret != null && ! ret.noReturnValue && ret.value != receiver) throw Error.createRuntimeError(ret.keyword, "Cannot return this kind of value from init method");
+            return receiver;
 
-            } else return ret.returnValue;
-        }
+        } else if (ret != null) return ret.value;
 
-        interpreter.environment = environment;
-        if (type == FuncType.INIT) return closure.getThis();
         return null;
     }
 
@@ -55,9 +94,13 @@ class LoxFunction implements LoxCallable{
     }
     
     LoxFunction bind(LoxInstance instance){
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        return new LoxFunction(this.function, environment, this.type);
+        if (Stats.ENABLED) Stats.boundMethods++;
+        return withUpvalues(upvalues, instance);
+    }
+
+    // Same function with other upvalues and receiver
+    LoxFunction withUpvalues(Upvalue[] upvalues, LoxInstance receiver){
+        return new LoxFunction(this.function, upvalues, this.type, receiver);
     }
 
 }
@@ -1,16 +1,21 @@
 package lox.lox;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import lox.error.Error;
 import lox.scanner.Token;
 
 public class LoxInstance {
     private LoxClass loxClass;
-    private HashMap<String, Object> fields= new HashMap<>();
+    // Field values are laid out by the shape
+    private Shape shape;
+    private Object[] values;
 
     LoxInstance(LoxClass loxClass){
         this.loxClass = loxClass;
+        this.shape = loxClass.rootShape;
+        this.values = new Object[loxClass.fieldCountHint];
+        if (Stats.ENABLED) Stats.instances++;
     }
 
     @Override
@@ -18,17 +23,23 @@ public class LoxInstance {
         return String.format("instance %s", loxClass);
     }
 
-    void set(Token name, Object value){
-        if (loxClass.methods.containsKey(name.lexeme)) throw Error.createRuntimeError(name, "Cannot set field to method name");
-        else fields.put(name.lexeme, value);
+    // ownMethodCache is the InlineCache.forOwnMethod of the setting site
+    void set(Token name, Object value, InlineCache ownMethodCache){
+        if (ownMethodCache.lookup(loxClass) != null) throw Error.createRuntimeError(name, "Cannot set field to method name");
+
+        int slot = ownMethodCache.slotOf(shape);
+        if (slot < 0) slot = addField(name.lexeme);
+        values[slot] = value;
     }
 
-    Object get(Token name){
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+    // methodCache is the InlineCache.forMethod of the accessing site
+    Object get(Token name, InlineCache methodCache){
+        int slot = methodCache.slotOf(shape);
+        if (slot >= 0) {
+            return values[slot];
         
         } else {
-                LoxFunction method = loxClass.findMethod(name.lexeme);
+                LoxFunction method = methodCache.lookup(loxClass);
                 if (method != null) return method.bind(this);
 
                 method = loxClass.findStaticMethod(name.lexeme);
@@ -36,4 +47,19 @@ public class LoxInstance {
                 else throw Error.createRuntimeError(name, "Undefined field");
         }
     }
+
+    // The method an `instance.name(...)` call can invoke directly, null if a field or static method has to be looked up instead
+    LoxFunction methodToInvoke(InlineCache methodCache){
+        if (methodCache.slotOf(shape) >= 0) return null;
+        return methodCache.lookup(loxClass);
+    }
+
+    private int addField(String name){
+        shape = shape.withField(name);
+        if (shape.size > values.length) values = Arrays.copyOf(values, shape.size);
+
+        // Later instances of the class get room for all the fields right away
+        if (shape.size > loxClass.fieldCountHint) loxClass.fieldCountHint = shape.size;
+        return shape.size - 1;
+    }
 }
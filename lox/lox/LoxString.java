@@ -0,0 +1,60 @@
+package lox.lox;
+
+// String value built by `+` once the result gets long (rope with lazy flattening)
+// The concatenations of a chain share one StringBuilder: a concatenation whose left operand ends where the builder ends
+// appends in place, so `s = s + x` does not copy s. The Java String is only built when the value is printed,
+// compared or converted, and is then kept
+final class LoxString {
+
+    // Shorter results stay plain Strings
+    private static final int MIN_LENGTH = 64;
+
+    private final StringBuilder chars;
+    final int length;
+    private String flat;
+
+    private LoxString(StringBuilder chars){
+        this.chars = chars;
+        this.length = chars.length();
+    }
+
+    // left and right are each a String or a LoxString
+    static Object concat(Object left, Object right){
+        if (Stats.ENABLED) Stats.stringConcatenations++;
+        if (left instanceof LoxString){
+            LoxString rope = (LoxString) left;
+            if (rope.chars.length() == rope.length){
+                append(rope.chars, right);
+                return new LoxString(rope.chars);
+            }
+        }
+
+        int length = length(left) + length(right);
+        if (length < MIN_LENGTH) return left.toString() + right.toString();
+
+        StringBuilder chars = new StringBuilder(length * 2);
+        append(chars, left);
+        append(chars, right);
+        return new LoxString(chars);
+    }
+
+    private static int length(Object value){
+        if (value instanceof LoxString) return ((LoxString) value).length;
+        return ((String) value).length();
+    }
+
+    private static void append(StringBuilder chars, Object value){
+        if (value instanceof LoxString){
+            LoxString rope = (LoxString) value;
+            chars.append(rope.chars, 0, rope.length);
+        } else {
+            chars.append((String) value);
+        }
+    }
+
+    @Override
+    public String toString(){
+        if (flat == null) flat = chars.substring(0, length);
+        return flat;
+    }
+}
@@ -0,0 +1,100 @@
+package lox.lox;
+
+// Instruction set of the bytecode VM
+// Operands follow the opcode in the chunk: [u8] is one byte, [u16] is two bytes (big endian)
+final class OpCode {
+
+    private OpCode(){
+    }
+
+    // Constants and literals
+    static final byte CONSTANT = 0;             // [u16 constant]
+    static final byte NUMBER = 64;              // [u16 number constant], pushed unboxed (see VM)
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte POP = 4;
+
+    // Variables, locals are the slots of the call frame on the stack (see VM)
+    static final byte GET_LOCAL = 5;            // [u16 slot]
+    static final byte SET_LOCAL = 6;            // [u16 slot]
+    static final byte GET_GLOBAL = 7;           // [u16 name token constant]
+    static final byte SET_GLOBAL = 8;           // [u16 name token constant]
+    static final byte DEFINE = 9;               // [u16 name constant], globals only (locals are stored with SET_LOCAL_POP)
+    static final byte CLEAR_LOCALS = 10;        // [u16 slot count], end of a block of the script, its values are not kept alive
+    static final byte POP_ENV = 11;             // closes the environment of INHERIT
+
+    // Operators, on two numbers they compute unboxed
+    static final byte ADD = 12;
+    static final byte SUBTRACT = 13;
+    static final byte MULTIPLY = 14;
+    static final byte DIVIDE = 15;
+    static final byte LT = 16;
+    static final byte GT = 17;
+    static final byte LEQ = 18;
+    static final byte GEQ = 19;
+    static final byte EQ = 20;
+    static final byte NEQ = 21;
+    static final byte NEGATE = 22;
+    static final byte NOT = 23;
+
+    // Control flow
+    static final byte JUMP = 24;                // [u16 forward offset]
+    static final byte JUMP_IF_FALSE = 25;       // [u16 forward offset], keeps the condition
+    static final byte JUMP_IF_TRUE = 26;        // [u16 forward offset], keeps the condition
+    static final byte POP_JUMP_IF_FALSE = 27;   // [u16 forward offset], pops the condition
+    static final byte LOOP = 28;                // [u16 backward offset]
+
+    // Functions
+    static final byte CALL = 29;                // [u8 argument count] [u16 init cache constant], callee on top of its arguments
+    static final byte CLOSURE = 30;             // [u16 function constant] [u16 captures constant], see VM.capture
+    static final byte RETURN = 31;
+    static final byte RETURN_INIT = 32;
+    static final byte CHECK_INIT_RETURN = 33;
+
+    // Classes and instances
+    static final byte CLASS = 34;               // [u16 name token constant] [u8 has superclass]
+    static final byte INHERIT = 35;             // opens the environment holding "super" for the methods
+    static final byte METHOD = 36;              // [u16 name constant]
+    static final byte STATIC_METHOD = 37;       // [u16 name constant]
+    static final byte GET_PROPERTY = 38;        // [u16 name token constant] [u16 method cache constant]
+    static final byte SET_PROPERTY = 39;        // [u16 name token constant] [u16 own method cache constant]
+    static final byte CHECK_INSTANCE = 40;      // [u16 name token constant]
+    static final byte GET_SUPER = 41;           // [u16 super expression constant], `this` on top of the stack
+
+    // Arrays
+    static final byte ARRAY = 42;               // [u16 element count]
+    static final byte ARRAY_EXTEND = 43;        // [u16 element count]
+    static final byte GET_ELEMENT = 44;
+    static final byte SET_ELEMENT = 45;
+    static final byte CHECK_ARRAY_GET = 46;
+    static final byte CHECK_ARRAY_SET = 47;
+    static final byte CHECK_ASSIGNMENT_INDEX = 48;
+
+    // Statements and errors
+    static final byte PRINT = 49;
+    static final byte RUNTIME_ERROR = 50;       // [u16 message constant]
+
+    // Superinstructions for the most common sequences in loops
+    static final byte SET_LOCAL_POP = 51;       // [u16 slot], assignment statement
+    static final byte SET_GLOBAL_POP = 52;      // [u16 name token constant], assignment statement
+    static final byte JUMP_IF_NOT_LT = 53;      // [u16 forward offset], pops both operands
+    static final byte JUMP_IF_NOT_GT = 54;      // [u16 forward offset], pops both operands
+    static final byte JUMP_IF_NOT_LEQ = 55;     // [u16 forward offset], pops both operands
+    static final byte JUMP_IF_NOT_GEQ = 56;     // [u16 forward offset], pops both operands
+
+    // Always followed by the CALL of `object.name(...)`, the object is on top of the arguments
+    // A method is handed to that CALL unbound, together with its receiver, instead of creating a bound method
+    static final byte INVOKE = 57;              // [u16 name token constant] [u16 method cache constant]
+
+    // Captured variables, see Upvalue
+    static final byte GET_UPVALUE = 58;         // [u16 upvalue index]
+    static final byte SET_UPVALUE = 59;         // [u16 upvalue index]
+    static final byte GET_BOXED = 60;           // [u16 slot], local holding a box
+    static final byte SET_BOXED = 61;           // [u16 slot], local holding a box
+    static final byte BOX = 62;                 // puts the value on top of the stack in a new box
+
+    // CALL of `return f(...)`, a compiled function replaces the running one in its call frame
+    // Always followed by a RETURN for the result of any other callee
+    static final byte TAIL_CALL = 63;           // [u8 argument count] [u16 init cache constant]
+}
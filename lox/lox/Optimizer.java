@@ -0,0 +1,30 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+// Pipeline of ASTTransformer passes run over the resolved program, each pass working on the result of the one before
+// Passes rebuild what they change, the program is resolved again afterwards when it did change
+final class Optimizer {
+
+    private final ArrayList<ASTTransformer> passes = new ArrayList<>();
+
+    // The passes every program goes through
+    static Optimizer standard(){
+        return new Optimizer()
+            .add(new ConstantFolder())
+            .add(new DeadCodeEliminator());
+    }
+
+    Optimizer add(ASTTransformer pass){
+        passes.add(pass);
+        return this;
+    }
+
+    // The statements themselves when no pass changed anything
+    ArrayList<Statement> optimize(ArrayList<Statement> statements){
+        for (ASTTransformer pass : passes){
+            statements = pass.transform(statements);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,46 @@
+package lox.lox;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+// Standard output of `print` statements
+// Lines collect in a large buffer that is written out when it fills up, when the flush interval has passed since the last write,
+// before `input()` reads, before an error is reported and when the program ends
+public final class Output {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+    private static PrintWriter writer = createWriter(DEFAULT_BUFFER_SIZE);
+    // Longest a printed line waits in the buffer while the program keeps printing, in nanoseconds
+    private static long flushInterval = DEFAULT_FLUSH_INTERVAL_MILLIS * 1_000_000L;
+    private static long lastFlush = System.nanoTime();
+
+    // Write every line out as soon as it is printed (interactive use)
+    static boolean lineFlush = false;
+
+    static void println(String line){
+        writer.println(line);
+        if (lineFlush || System.nanoTime() - lastFlush > flushInterval) flush();
+    }
+
+    public static void flush(){
+        writer.flush();
+        lastFlush = System.nanoTime();
+    }
+
+    // Set from the command line (--buffer-size and --flush-interval) before the program runs
+    static void setBufferSize(int chars){
+        flush();
+        writer = createWriter(chars);
+    }
+
+    static void setFlushInterval(long millis){
+        flushInterval = millis * 1_000_000L;
+    }
+
+    private static PrintWriter createWriter(int bufferSize){
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), bufferSize), false);
+    }
+}
@@ -7,14 +7,22 @@ import lox.scanner.Token;
 import lox.scanner.TokenType;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 
 public class Parser {
     
-    ArrayList<Token> tokens;
-    private int currentToken=0;
+    private final Iterator<Token> tokens;
+    // null once the EOF token has been consumed
+    private Token currentToken;
 
     public Parser(ArrayList<Token> tokens){
+        this(tokens.iterator());
+    }
+
+    // Pulls the tokens one at a time, e.g. straight from a LoxScanner
+    public Parser(Iterator<Token> tokens){
         this.tokens = tokens;
+        this.currentToken = tokens.next();
     }
 
     public ArrayList<Statement> parse(){
@@ -479,7 +487,8 @@ public class Parser {
                 consumeToken(TokenType.DOT, "'.' expected after super keyword");
                 Token method = getCurrentToken();
                 consumeToken(TokenType.IDENTIFIER, "Superclass method name expected");
-                return new SuperExpression(currentToken, method);
+                // The method gets bound to `this`, which the Resolver resolves like any other use of it
+                return new SuperExpression(currentToken, method, new ThisExpression(currentToken));
 
             case "[":
                 ArrayList<Expression> elements = new ArrayList<>();
@@ -517,17 +526,18 @@ public class Parser {
     }
 
     private Token getCurrentToken(){
-        return tokens.get(currentToken);
+        if (noMoreTokensToConsume()) throw new IndexOutOfBoundsException();
+        return currentToken;
     }
 
     // will return True if the last token has been consumed
     private boolean noMoreTokensToConsume(){
-        return currentToken >= tokens.size();
+        return currentToken == null;
     }
 
     private void consumeToken() {
         if (noMoreTokensToConsume()) throw new IndexOutOfBoundsException();
-        currentToken++;
+        currentToken = tokens.hasNext() ? tokens.next() : null;
     }
 
     private void consumeToken(TokenType tokenType){
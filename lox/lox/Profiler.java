@@ -0,0 +1,106 @@
+package lox.lox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import lox.scanner.Token;
+
+// Sampling profiler of Lox code (--profile)
+// Every Lox function and class call pushes the token naming it on a call stack of its own, a daemon thread looks at that stack
+// every SAMPLE_INTERVAL and counts how often it saw each one
+// The counts are written as collapsed stacks (`script;outer:3;inner:12 42`, one stack per line) as read by flamegraph.pl and speedscope,
+// each frame being the name of the function or class and the line it is declared on
+final class Profiler {
+
+    // Milliseconds between two samples
+    private static final long SAMPLE_INTERVAL = 1;
+
+    // Checked before every push and pop so that running without --profile only costs a static field read per call
+    static boolean enabled = false;
+
+    // Written by the thread running the program only, read by the sampler
+    // depth is written after the frame it covers, so the sampler never sees a slot that was not filled in
+    private static Token[] frames = new Token[64];
+    private static volatile int depth = 0;
+
+    private static String root;
+    private static Thread sampler;
+    private static volatile boolean sampling;
+    private static final HashMap<String, Integer> samples = new HashMap<>();
+
+    static void enter(Token name){
+        int top = depth;
+        if (top == frames.length){
+            Token[] grown = new Token[top * 2];
+            System.arraycopy(frames, 0, grown, 0, top);
+            frames = grown;
+        }
+        frames[top] = name;
+        depth = top + 1;
+    }
+
+    static void exit(){
+        depth--;
+    }
+
+    // Starts sampling the program, root is the frame all stacks start with
+    static void start(String rootFrame){
+        root = rootFrame;
+        depth = 0;
+        samples.clear();
+        sampling = true;
+
+        sampler = new Thread(Profiler::sample, "lox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    // Stops sampling and writes the collapsed stacks to the file
+    static void stop(Path file){
+        sampling = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            for (Map.Entry<String, Integer> entry : samples.entrySet()){
+                out.write(entry.getKey());
+                out.write(' ');
+                out.write(Integer.toString(entry.getValue()));
+                out.newLine();
+            }
+        } catch (IOException e){
+            System.err.println(String.format("Could not write profile to %s: %s", file, e.getMessage()));
+        }
+    }
+
+    private static void sample(){
+        StringBuilder stack = new StringBuilder();
+        while (sampling){
+            // The array is read before depth: a stale array from before it grew is cut to its own length
+            Token[] current = frames;
+            int top = Math.min(depth, current.length);
+
+            stack.setLength(0);
+            stack.append(root);
+            for (int i = 0; i < top; i++){
+                Token frame = current[i];
+                stack.append(';').append(frame.lexeme).append(':').append(frame.line);
+            }
+            samples.merge(stack.toString(), 1, Integer::sum);
+
+            try {
+                Thread.sleep(SAMPLE_INTERVAL);
+            } catch (InterruptedException e){
+                return;
+            }
+        }
+    }
+}
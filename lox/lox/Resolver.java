@@ -1,24 +1,100 @@
 package lox.lox;
 
 import lox.scanner.Token;
+import lox.scanner.TokenType;
 import lox.error.Error;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>{
 
-    private Interpreter interpreter;
     private ArrayList<Statement> statements;
     private ClassType currentClassScope = ClassType.NONE;
     private FuncType currentFuncScope = FuncType.NONE;
-    private LinkedList<HashMap<String, Boolean>> scopes = new LinkedList<>();
+    private LinkedList<Scope> scopes = new LinkedList<>();
+    // Code outside of any function has no upvalues, but its blocks have locals functions can capture
+    private FunctionContext currentFunction = new FunctionContext(null, null);
+
+    // A local scope, and the environment its variables live in at runtime
+    // Only functions and the outermost blocks of the script get an environment, every other block
+    // takes slots in the environment of the enclosing scope, slots that later blocks reuse once they end
+    // (a captured variable gets a new box each time its declaration runs, so closures never need a fresh environment)
+    private static final class Scope {
+        // Names are the canonical Strings the scanner interns, so scopes compare them by identity
+        final IdentityHashMap<String, Boolean> names = new IdentityHashMap<>();
+        // Every variable declared in the scope
+        final IdentityHashMap<String, Local> locals = new IdentityHashMap<>();
+        // Function whose code the scope is part of
+        final FunctionContext function;
+        // Scope owning the environment, the scope itself if it has one and null if it has none and is not inside one
+        final Scope frame;
+        // Environments between the outermost local one and the frame's, how many hops a lookup crosses is the difference of two of them
+        final int frameDepth;
+        // First slot of the frame used by this scope
+        final int firstSlot;
+
+        // Next free slot and slots needed so far, on frames only
+        int nextSlot = 0;
+        int size = 0;
+
+        Scope(Scope enclosing, boolean ownEnvironment, FunctionContext function){
+            this.function = function;
+            Scope enclosingFrame = (enclosing == null) ? null : enclosing.frame;
+            if (ownEnvironment){
+                frame = this;
+                frameDepth = (enclosingFrame == null) ? 0 : enclosingFrame.frameDepth + 1;
+            } else {
+                frame = enclosingFrame;
+                frameDepth = (enclosingFrame == null) ? -1 : enclosingFrame.frameDepth;
+            }
+            firstSlot = (frame == null) ? 0 : frame.nextSlot;
+        }
+
+        int allocateSlot(){
+            int slot = frame.nextSlot++;
+            frame.size = Math.max(frame.size, frame.nextSlot);
+            return slot;
+        }
+    }
+
+    // A local variable, `this` or `super`
+    private static final class Local {
+        final int slot;
+        // VarDec, Function or Class statement, null for parameters, `this` and `super`
+        final Statement declaration;
+        // Expressions reading or assigning it from the function declaring it
+        final ArrayList<Expression> references = new ArrayList<>();
+        // Whether a closure captures it, which makes every access go through its box
+        boolean captured = false;
+
+        Local(int slot, Statement declaration){
+            this.slot = slot;
+            this.declaration = declaration;
+        }
+    }
+
+    // Function being resolved, and the variables of enclosing functions it captures
+    private static final class FunctionContext {
+        final FunctionContext enclosing;
+        // Scope the function is declared in, the environment its closures get created in at runtime
+        final Scope declaration;
+        // Index in the function's upvalues of every variable it captures
+        final IdentityHashMap<Local, Integer> upvalues = new IdentityHashMap<>();
+        // (depth, slot) for each upvalue that is a local of the enclosing function, (-1, index) for those the enclosing function captures itself
+        final ArrayList<Integer> captures = new ArrayList<>();
+
+        FunctionContext(FunctionContext enclosing, Scope declaration){
+            this.enclosing = enclosing;
+            this.declaration = declaration;
+        }
+    }
 
     // Constructor
 
-    Resolver(Interpreter interpreter, ArrayList<Statement> statements){
-        this.interpreter = interpreter;
+    Resolver(ArrayList<Statement> statements){
         this.statements = statements;
     }
 
@@ -58,9 +134,14 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitVarDecStatement(VarDecStatement stmt) {
-        if (scopes.isEmpty()) return null;
+        // Globals are not tracked in scopes, but their initializer still needs resolving
+        if (scopes.isEmpty()){
+            if (stmt.initializer != null) resolve(stmt.initializer);
+            return null;
+        }
 
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name, stmt);
+        stmt.boxed = false;
         if (stmt.initializer != null) resolve(stmt.initializer);
         define(stmt.name);
         return null;
@@ -68,9 +149,12 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitBlockStatement(BlockStatement stmt) {
-        beginScope();
+        boolean insideEnvironment = !scopes.isEmpty() && scopes.getLast().frame != null;
+        stmt.ownEnvironment = declaresNames(stmt.statements) && !insideEnvironment;
+
+        beginScope(stmt.ownEnvironment);
         resolve(stmt.statements);
-        endScope();
+        stmt.localCount = endScope();
         return null;
     }
 
@@ -91,22 +175,41 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitFunctionStatement(FunctionStatement stmt) {
+        stmt.slot = declare(stmt.name, stmt);
+        stmt.boxed = false;
+        define(stmt.name);
+
+        resolveFunction(stmt);
+        return null;
+    }
+
+    // Methods are not variables of the class scope, so they only go through this part
+    private void resolveFunction(FunctionStatement stmt){
         FuncType previous = currentFuncScope;
         currentFuncScope = stmt.type;
+        FunctionContext enclosingFunction = currentFunction;
+        currentFunction = new FunctionContext(enclosingFunction, scopes.peekLast());
 
-        declare(stmt.name);
-        define(stmt.name);
-
-        beginScope();
+        beginScope(true);
+        // Methods find the instance they run on in the first slot of their environment
+        if (stmt.type == FuncType.METHOD || stmt.type == FuncType.INIT) defineImplicit("this");
         for (Token token : stmt.parameters){
-            declare(token);
+            declare(token, null);
             define(token);
         }
         resolve(stmt.body);
-        endScope();
 
+        // Parameters are defined by the call, which boxes the captured ones afterwards
+        ArrayList<Integer> boxedSlots = new ArrayList<>();
+        for (Local local : scopes.getLast().locals.values()){
+            if (local.captured) boxedSlots.add(local.slot);
+        }
+        stmt.boxedSlots = toArray(boxedSlots);
+        stmt.upvalues = toArray(currentFunction.captures);
+        stmt.localCount = endScope();
+
+        currentFunction = enclosingFunction;
         currentFuncScope = previous;
-        return null;
     }
 
 
@@ -116,34 +219,32 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
         ClassType previous = currentClassScope;
         currentClassScope = ClassType.CLASS;
 
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name, stmt);
+        stmt.boxed = false;
         define(stmt.name);
 
-        if (stmt.superclass != null){
-            currentClassScope = ClassType.SUBCLASS;
-            beginScope();
-            scopes.getLast().put("super", true);
-        }
-
-        beginScope();
-        scopes.getLast().put("this", true);
-
         if (stmt.superclass != null) {
             // cannot inherit from itself
             if (stmt.superclass.name.lexeme.equals(stmt.name.lexeme)) Error.reportResolverError(stmt.name, "Class cannot inherit from itself.");
+            // Evaluated in the enclosing scope, before the "super" scope exists
             resolve(stmt.superclass);
         }
 
+        // Only methods refer to "super", always as an upvalue, so the engines store it boxed
+        if (stmt.superclass != null){
+            currentClassScope = ClassType.SUBCLASS;
+            beginScope(true);
+            defineImplicit("super");
+        }
+
         for (FunctionStatement function: stmt.methods){
-            resolve(function);
+            resolveFunction(function);
         }
 
         for (FunctionStatement function: stmt.staticMethods){
-            resolve(function);
+            resolveFunction(function);
         }
 
-        endScope();
-
         if (stmt.superclass != null){
             endScope();
         }
@@ -155,6 +256,10 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     @Override
     public Void visitReturnStatement(ReturnStatement stmt) {
         if (stmt.returnValue != null) resolve(stmt.returnValue);
+
+        // init has to return `this` whatever it calls last, and the script has no call to replace
+        stmt.tailCall = stmt.returnValue instanceof CallExpression
+            && currentFuncScope != FuncType.NONE && currentFuncScope != FuncType.INIT;
         return null;
     }
 
@@ -164,30 +269,60 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     public Void visitBinaryExpression(BinaryExpression expr) {
         resolve(expr.left);
         resolve(expr.right);
+
+        // -, * and / either produce a number or fail, + only when both operands are numbers
+        switch (expr.operator.type) {
+            case SUBTRACT:
+            case MULTIPLY:
+            case DIVIDE:
+                expr.numeric = true;
+                break;
+            case ADD:
+                expr.numeric = expr.left.numeric && expr.right.numeric;
+                break;
+            default:
+                break;
+        }
         return null;
     }
 
     @Override
     public Void visitUnaryExpression(UnaryExpression expr) {
         resolve(expr.expression);
+        expr.numeric = expr.operator.type == TokenType.SUBTRACT;
         return null;
     }
 
     @Override
     public Void visitGroupingExpression(GroupingExpression expr) {
         resolve(expr.expression);
+        expr.numeric = expr.expression.numeric;
         return null;
     }
 
     @Override
     public Void visitLiteralExpression(LiteralExpression expr) {
+        expr.numeric = expr.value instanceof Double;
         return null;
     }
 
     @Override
     public Void visitThisExpression(ThisExpression expr) {
         if (currentFuncScope == FuncType.STATIC) Error.reportResolverError(expr.keyword, "Cannot use `this` inside a static method");
-        resolveLocalVariableUsage(expr, expr.keyword);
+
+        // Also the receiver of `super` expressions, whose keyword is "super"
+        expr.depth = -1;
+        expr.upvalue = -1;
+        expr.boxed = false;
+        Scope scope = findScope("this");
+        if (scope == null) return null;
+
+        Local local = scope.locals.get("this");
+        if (scope.function == currentFunction){
+            expr.depth = calculateHops(scope);
+            expr.slot = local.slot;
+            local.references.add(expr);
+        } else expr.upvalue = captureUpvalue(currentFunction, scope, local);
         return null;
     }
 
@@ -223,7 +358,11 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
             Error.reportResolverError(expr.keyword, "Cannot use `super` in a class with no superclass");
        } else if (currentFuncScope == FuncType.STATIC){
             Error.reportResolverError(expr.keyword, "Cannot use `super` inside a static method");
-       } else resolveLocalVariableUsage(expr, expr.keyword);
+       } else {
+            Scope scope = findScope(expr.keyword.lexeme);
+            expr.upvalue = captureUpvalue(currentFunction, scope, scope.locals.get(expr.keyword.lexeme));
+            resolve(expr.receiver);
+       }
         return null;
     }
 
@@ -231,17 +370,42 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     public Void visitVariableExpression(VariableExpression expr) {
 
         if ((!scopes.isEmpty())
-            && scopes.getLast().get(expr.name.lexeme) == Boolean.FALSE) 
+            && scopes.getLast().names.get(expr.name.lexeme) == Boolean.FALSE) 
                 Error.reportResolverError(expr.name, "Cannot read a local variable in its own initializer");
-        
-        resolveLocalVariableUsage(expr, expr.name);
+
+        expr.depth = -1;
+        expr.upvalue = -1;
+        expr.boxed = false;
+        // Assume it is a global variable if no scope declares it
+        Scope scope = findScope(expr.name.lexeme);
+        if (scope == null) return null;
+
+        Local local = scope.locals.get(expr.name.lexeme);
+        if (scope.function == currentFunction){
+            expr.depth = calculateHops(scope);
+            expr.slot = local.slot;
+            local.references.add(expr);
+        } else expr.upvalue = captureUpvalue(currentFunction, scope, local);
         return null;
     }
 
     @Override
     public Void visitAssignmentExpression(AssignmentExpression expr) {
         resolve(expr.value);
-        resolveLocalVariableUsage(expr, expr.name);
+
+        expr.depth = -1;
+        expr.upvalue = -1;
+        expr.boxed = false;
+        // Assume it is a global variable if no scope declares it
+        Scope scope = findScope(expr.name.lexeme);
+        if (scope == null) return null;
+
+        Local local = scope.locals.get(expr.name.lexeme);
+        if (scope.function == currentFunction){
+            expr.depth = calculateHops(scope);
+            expr.slot = local.slot;
+            local.references.add(expr);
+        } else expr.upvalue = captureUpvalue(currentFunction, scope, local);
         return null;
     }
 
@@ -259,12 +423,14 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
         for (Expression argument : expr.arguments){
             resolve(argument);
         }
+        expr.initCache = InlineCache.forMethod("init");
         return null;
     }
 
     @Override
     public Void visitGetExpression(GetExpression expr) {
         resolve(expr.object);
+        expr.methodCache = InlineCache.forMethod(expr.name.lexeme);
         return null;
     }
 
@@ -272,44 +438,115 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     public Void visitSetExpression(SetExpression expr) {
         resolve(expr.object);
         resolve(expr.value);
+        expr.ownMethodCache = InlineCache.forOwnMethod(expr.name.lexeme);
         return null;
     }
 
     // Helper methods
 
-    private void beginScope(){
-        scopes.addLast(new HashMap<String, Boolean>());
+    private void beginScope(boolean ownEnvironment){
+        scopes.addLast(new Scope(scopes.peekLast(), ownEnvironment, currentFunction));
     }
 
-    private void endScope(){
-        scopes.removeLast();
+    // Returns the number of slots the scope's environment needs at runtime, the slots of a scope without one are free again
+    // Captured variables are boxed from their declaration on, every access from their own function goes through the box
+    private int endScope(){
+        Scope scope = scopes.removeLast();
+        for (Local local : scope.locals.values()){
+            if (local.captured) box(local);
+        }
+
+        if (scope.frame != scope){
+            if (scope.frame != null) scope.frame.nextSlot = scope.firstSlot;
+            return 0;
+        }
+        return scope.size;
     }
 
-    private void declare(Token token){
-        if (scopes.isEmpty()) return;
-        HashMap<String, Boolean> scope = scopes.getLast();
+    // Returns the slot of the declared variable, -1 for globals
+    private int declare(Token token, Statement declaration){
+        if (scopes.isEmpty()) return -1;
+        Scope scope = scopes.getLast();
+
+        if (scope.names.containsKey(token.lexeme)) Error.reportResolverError(token, "Cannot re-declare variables in this scope");
+        scope.names.put(token.lexeme, Boolean.FALSE);
+
+        if (!scope.locals.containsKey(token.lexeme)) scope.locals.put(token.lexeme, new Local(scope.allocateSlot(), declaration));
+        return scope.locals.get(token.lexeme).slot;
+    }
 
-        if (scope.containsKey(token.lexeme)) Error.reportResolverError(token, "Cannot re-declare variables in this scope");
-        scope.put(token.lexeme, Boolean.FALSE);
+    // For "this" and "super"
+    private void defineImplicit(String name){
+        Scope scope = scopes.getLast();
+        scope.names.put(name, Boolean.TRUE);
+        scope.locals.put(name, new Local(scope.allocateSlot(), null));
     }
 
     private void define(Token token){
         if (scopes.isEmpty()) return;
-        scopes.getLast().put(token.lexeme, Boolean.TRUE);
+        scopes.getLast().names.put(token.lexeme, Boolean.TRUE);
     }
 
-    private void resolveLocalVariableUsage(Expression varExpression, Token token){
-        Integer numberOfHops = calculateHops(token.lexeme, 0);
-        // Assume it is a global variable if numberOfHops is null
-        if (numberOfHops == null) return;
+    // Scope the name is declared in, null for globals
+    private Scope findScope(String lexeme){
+        Iterator<Scope> enclosing = scopes.descendingIterator();
+        while (enclosing.hasNext()){
+            Scope scope = enclosing.next();
+            if (scope.names.containsKey(lexeme)) return scope;
+        }
+        return null;
+    }
 
-        interpreter.resolve(varExpression, numberOfHops);
+    // Number of environments between the current one and the one holding the variable
+    private int calculateHops(Scope scope){
+        return scopes.getLast().frameDepth - scope.frameDepth;
     }
 
-    private Integer calculateHops(String lexeme, int currentHops){
-        if ((scopes.size() -1 - currentHops) < 0 ) return null;
-        if (scopes.get(scopes.size() -1 -currentHops).containsKey(lexeme)) return currentHops;
+    // Index of the upvalue through which `function` reaches the local declared in `scope` by an enclosing function
+    // Each function in between captures it too, so that the closure created inside it can copy it from its own upvalues
+    private static int captureUpvalue(FunctionContext function, Scope scope, Local local){
+        Integer index = function.upvalues.get(local);
+        if (index != null) return index;
+
+        if (scope.function == function.enclosing){
+            local.captured = true;
+            function.captures.add(function.declaration.frameDepth - scope.frameDepth);
+            function.captures.add(local.slot);
+        } else {
+            function.captures.add(-1);
+            function.captures.add(captureUpvalue(function.enclosing, scope, local));
+        }
+
+        index = function.upvalues.size();
+        function.upvalues.put(local, index);
+        return index;
+    }
 
-        return calculateHops(lexeme, currentHops+1);
+    private static void box(Local local){
+        for (Expression reference : local.references){
+            if (reference instanceof VariableExpression) ((VariableExpression) reference).boxed = true;
+            else if (reference instanceof AssignmentExpression) ((AssignmentExpression) reference).boxed = true;
+            else ((ThisExpression) reference).boxed = true;
+        }
+
+        if (local.declaration instanceof VarDecStatement) ((VarDecStatement) local.declaration).boxed = true;
+        else if (local.declaration instanceof FunctionStatement) ((FunctionStatement) local.declaration).boxed = true;
+        else if (local.declaration instanceof ClassStatement) ((ClassStatement) local.declaration).boxed = true;
+    }
+
+    private static int[] toArray(ArrayList<Integer> values){
+        int[] array = new int[values.size()];
+        for (int i=0; i < array.length; i++){
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    // Whether the statements declare anything directly in their scope
+    private static boolean declaresNames(ArrayList<Statement> statements){
+        for (Statement statement : statements){
+            if (statement instanceof VarDecStatement || statement instanceof FunctionStatement || statement instanceof ClassStatement) return true;
+        }
+        return false;
     }
 }
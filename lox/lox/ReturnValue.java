@@ -0,0 +1,36 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+import lox.scanner.Token;
+
+// Completion of a `return` statement
+// Statements hand it back up through the enclosing blocks and loops to the function call instead of throwing
+final class ReturnValue {
+    final Token keyword;
+    final Object value;
+    final boolean noReturnValue;
+
+    // Set by a tail call (`return f(...)`): the function LoxFunction.call runs next in place of the one returning
+    final LoxFunction tailCall;
+    final LoxInstance receiver;
+    final ArrayList<Object> arguments;
+
+    ReturnValue(Token keyword, Object value, boolean noReturnValue){
+        this.keyword = keyword;
+        this.value = value;
+        this.noReturnValue = noReturnValue;
+        this.tailCall = null;
+        this.receiver = null;
+        this.arguments = null;
+    }
+
+    ReturnValue(Token keyword, LoxFunction tailCall, LoxInstance receiver, ArrayList<Object> arguments){
+        this.keyword = keyword;
+        this.value = null;
+        this.noReturnValue = false;
+        this.tailCall = tailCall;
+        this.receiver = receiver;
+        this.arguments = arguments;
+    }
+}
@@ -0,0 +1,41 @@
+package lox.lox;
+
+import java.util.HashMap;
+
+// Hidden class describing the field layout of LoxInstances: which field lives in which slot of the instance's values
+// Instances of a class start at the class's empty root shape and move along shared transitions as fields are added,
+// so instances that got the same fields in the same order share one Shape
+final class Shape {
+
+    private final HashMap<String, Integer> slots;
+    private final HashMap<String, Shape> transitions = new HashMap<>();
+    final int size;
+
+    // Root shape without any fields
+    Shape(){
+        this.slots = new HashMap<>();
+        this.size = 0;
+    }
+
+    private Shape(Shape parent, String field){
+        this.slots = new HashMap<>(parent.slots);
+        this.slots.put(field, parent.size);
+        this.size = parent.size + 1;
+    }
+
+    // Slot of the field, -1 if instances of this shape do not have it
+    int slotOf(String field){
+        Integer slot = slots.get(field);
+        return (slot == null) ? -1 : slot;
+    }
+
+    // Shape of an instance of this shape once the field is added, the new field takes the next slot
+    Shape withField(String field){
+        Shape next = transitions.get(field);
+        if (next == null){
+            next = new Shape(this, field);
+            transitions.put(field, next);
+        }
+        return next;
+    }
+}
@@ -1,10 +1,68 @@
 package lox.lox;
 
 import lox.scanner.Token;
+import java.io.IOException;
 import java.util.ArrayList;
 
 abstract class Statement {
+	static final int LAYOUT = -387977983;
 	abstract <R> R accept(StatementVisitor<R> visitor);
+	abstract void write(ASTWriter out) throws IOException;
+
+	static Statement read(ASTReader in, int tag) throws IOException{
+		switch (tag) {
+			case 0: {
+				ExpressionStatement node = new ExpressionStatement(in.readExpression());
+				return node;
+			}
+			case 1: {
+				PrintStatement node = new PrintStatement(in.readExpression());
+				return node;
+			}
+			case 2: {
+				VarDecStatement node = new VarDecStatement(in.readToken(), in.readExpression());
+				node.slot = in.readInt();
+				node.boxed = in.readBoolean();
+				return node;
+			}
+			case 3: {
+				BlockStatement node = new BlockStatement(in.readStatements());
+				node.localCount = in.readInt();
+				node.ownEnvironment = in.readBoolean();
+				return node;
+			}
+			case 4: {
+				IfElseStatement node = new IfElseStatement(in.readExpression(), in.readStatement(), in.readStatement());
+				return node;
+			}
+			case 5: {
+				WhileStatement node = new WhileStatement(in.readExpression(), in.readStatement());
+				return node;
+			}
+			case 6: {
+				FunctionStatement node = new FunctionStatement(in.readToken(), in.readTokens(), in.readStatement(), in.readFuncType());
+				node.slot = in.readInt();
+				node.boxed = in.readBoolean();
+				node.localCount = in.readInt();
+				node.boxedSlots = in.readInts();
+				node.upvalues = in.readInts();
+				return node;
+			}
+			case 7: {
+				ReturnStatement node = new ReturnStatement(in.readToken(), in.readExpression());
+				node.tailCall = in.readBoolean();
+				return node;
+			}
+			case 8: {
+				ClassStatement node = new ClassStatement(in.readToken(), (VariableExpression) in.readExpression(), in.readStatements(), in.readStatements());
+				node.slot = in.readInt();
+				node.boxed = in.readBoolean();
+				return node;
+			}
+			default:
+				throw new IOException("Unknown Statement tag: " + tag);
+		}
+	}
 }
 
 class ExpressionStatement extends Statement{
@@ -17,6 +75,12 @@ class ExpressionStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitExpressionStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(0);
+		out.writeExpression(expression);
+	}
 }
 
 class PrintStatement extends Statement{
@@ -29,11 +93,19 @@ class PrintStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitPrintStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(1);
+		out.writeExpression(expression);
+	}
 }
 
 class VarDecStatement extends Statement{
 	final Token name;
 	final Expression initializer;
+	int slot = -1;
+	boolean boxed;
 
 	VarDecStatement(Token name, Expression initializer){
 		this.name = name;
@@ -43,10 +115,21 @@ class VarDecStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitVarDecStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(2);
+		out.writeToken(name);
+		out.writeExpression(initializer);
+		out.writeInt(slot);
+		out.writeBoolean(boxed);
+	}
 }
 
 class BlockStatement extends Statement{
 	final ArrayList<Statement> statements;
+	int localCount;
+	boolean ownEnvironment;
 
 	BlockStatement(ArrayList<Statement> statements){
 		this.statements = statements;
@@ -55,6 +138,14 @@ class BlockStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitBlockStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(3);
+		out.writeStatements(statements);
+		out.writeInt(localCount);
+		out.writeBoolean(ownEnvironment);
+	}
 }
 
 class IfElseStatement extends Statement{
@@ -71,6 +162,14 @@ class IfElseStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitIfElseStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(4);
+		out.writeExpression(expr);
+		out.writeStatement(ifStatement);
+		out.writeStatement(elseStatement);
+	}
 }
 
 class WhileStatement extends Statement{
@@ -85,6 +184,13 @@ class WhileStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitWhileStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(5);
+		out.writeExpression(expr);
+		out.writeStatement(statement);
+	}
 }
 
 class FunctionStatement extends Statement{
@@ -92,6 +198,11 @@ class FunctionStatement extends Statement{
 	final ArrayList<Token> parameters;
 	final Statement body;
 	final FuncType type;
+	int slot = -1;
+	boolean boxed;
+	int localCount;
+	int[] boxedSlots;
+	int[] upvalues;
 
 	FunctionStatement(Token name, ArrayList<Token> parameters, Statement body, FuncType type){
 		this.name = name;
@@ -103,11 +214,26 @@ class FunctionStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitFunctionStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(6);
+		out.writeToken(name);
+		out.writeTokens(parameters);
+		out.writeStatement(body);
+		out.writeFuncType(type);
+		out.writeInt(slot);
+		out.writeBoolean(boxed);
+		out.writeInt(localCount);
+		out.writeInts(boxedSlots);
+		out.writeInts(upvalues);
+	}
 }
 
 class ReturnStatement extends Statement{
 	final Token keyword;
 	final Expression returnValue;
+	boolean tailCall;
 
 	ReturnStatement(Token keyword, Expression returnValue){
 		this.keyword = keyword;
@@ -117,6 +243,14 @@ class ReturnStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitReturnStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(7);
+		out.writeToken(keyword);
+		out.writeExpression(returnValue);
+		out.writeBoolean(tailCall);
+	}
 }
 
 class ClassStatement extends Statement{
@@ -124,6 +258,8 @@ class ClassStatement extends Statement{
 	final VariableExpression superclass;
 	final ArrayList<FunctionStatement> methods;
 	final ArrayList<FunctionStatement> staticMethods;
+	int slot = -1;
+	boolean boxed;
 
 	ClassStatement(Token name, VariableExpression superclass, ArrayList<FunctionStatement> methods, ArrayList<FunctionStatement> staticMethods){
 		this.name = name;
@@ -135,6 +271,17 @@ class ClassStatement extends Statement{
 	@Override
 	<R> R accept(StatementVisitor<R> visit){
 	 return visit.visitClassStatement(this);}
+
+	@Override
+	void write(ASTWriter out) throws IOException{
+		out.writeTag(8);
+		out.writeToken(name);
+		out.writeExpression(superclass);
+		out.writeStatements(methods);
+		out.writeStatements(staticMethods);
+		out.writeInt(slot);
+		out.writeBoolean(boxed);
+	}
 }
 
 
@@ -0,0 +1,349 @@
+package lox.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import lox.error.Error;
+import lox.scanner.Token;
+
+// Executable node built once from a Statement by the TreeCompiler
+// execute returns null, or the ReturnValue of a `return` statement it executed
+abstract class StatementNode {
+    abstract ReturnValue execute(Environment environment);
+}
+
+final class ExpressionStatementNode extends StatementNode implements NodeParent {
+    private ExpressionNode expression;
+
+    ExpressionStatementNode(ExpressionNode expression){
+        this.expression = ExpressionNode.adopt(this, expression);
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        expression.execute(environment);
+        return null;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        expression = replacement;
+    }
+}
+
+final class PrintNode extends StatementNode implements NodeParent {
+    private ExpressionNode expression;
+
+    PrintNode(ExpressionNode expression){
+        this.expression = ExpressionNode.adopt(this, expression);
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        Output.println(Interpreter.stringify(expression.execute(environment)));
+        return null;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        expression = replacement;
+    }
+}
+
+final class VarDecNode extends StatementNode implements NodeParent {
+    private final int slot;
+    private final boolean boxed;
+    private final String name;
+    private ExpressionNode initializer;
+
+    VarDecNode(int slot, boolean boxed, String name, ExpressionNode initializer){
+        this.slot = slot;
+        this.boxed = boxed;
+        this.name = name;
+        this.initializer = ExpressionNode.adopt(this, initializer);
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        Object value = null;
+        if (initializer != null) value = initializer.execute(environment);
+        environment.define(slot, name, boxed ? new Upvalue(value) : value);
+        return null;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        initializer = replacement;
+    }
+}
+
+final class BlockNode extends StatementNode {
+    private final int localCount;
+    private final StatementNode[] statements;
+
+    BlockNode(int localCount, StatementNode[] statements){
+        this.localCount = localCount;
+        this.statements = statements;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        Environment blockEnvironment = new Environment(environment, localCount);
+        for (StatementNode statement : statements){
+            ReturnValue ret = statement.execute(blockEnvironment);
+            if (ret != null) return ret;
+        }
+        return null;
+    }
+}
+
+// Block running in the environment it is in, its variables (if any) have slots there
+final class SequenceNode extends StatementNode {
+    private final StatementNode[] statements;
+
+    SequenceNode(StatementNode[] statements){
+        this.statements = statements;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        for (StatementNode statement : statements){
+            ReturnValue ret = statement.execute(environment);
+            if (ret != null) return ret;
+        }
+        return null;
+    }
+}
+
+final class IfElseNode extends StatementNode implements NodeParent {
+    private ExpressionNode condition;
+    private final StatementNode ifStatement;
+    private final StatementNode elseStatement;
+
+    IfElseNode(ExpressionNode condition, StatementNode ifStatement, StatementNode elseStatement){
+        this.condition = ExpressionNode.adopt(this, condition);
+        this.ifStatement = ifStatement;
+        this.elseStatement = elseStatement;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        if (Interpreter.truthOrFalse(condition.execute(environment))) return ifStatement.execute(environment);
+        else if (elseStatement != null) return elseStatement.execute(environment);
+        return null;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        condition = replacement;
+    }
+}
+
+final class WhileNode extends StatementNode implements NodeParent {
+    private ExpressionNode condition;
+    private final StatementNode body;
+
+    WhileNode(ExpressionNode condition, StatementNode body){
+        this.condition = ExpressionNode.adopt(this, condition);
+        this.body = body;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        while (Interpreter.truthOrFalse(condition.execute(environment))){
+            ReturnValue ret = body.execute(environment);
+            if (ret != null) return ret;
+        }
+        return null;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        condition = replacement;
+    }
+}
+
+// `while (true)`, the body runs until it returns
+final class LoopNode extends StatementNode {
+    private final StatementNode body;
+
+    LoopNode(StatementNode body){
+        this.body = body;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        while (true){
+            ReturnValue ret = body.execute(environment);
+            if (ret != null) return ret;
+        }
+    }
+}
+
+final class FunctionNode extends StatementNode {
+    final FunctionStatement function;
+    private final StatementNode body;
+
+    FunctionNode(FunctionStatement function, StatementNode body){
+        this.function = function;
+        this.body = body;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        // The box of a function calling itself has to be there before the upvalues are captured
+        if (function.boxed){
+            environment.define(function.slot, function.name.lexeme, new Upvalue(null));
+            environment.assignBoxedAt(0, function.slot, createFunction(environment));
+        } else environment.define(function.slot, function.name.lexeme, createFunction(environment));
+        return null;
+    }
+
+    // The function closing over the variables it captures from `environment`
+    TreeFunction createFunction(Environment environment){
+        return new TreeFunction(function, environment.capture(function.upvalues), function.type, null, body);
+    }
+}
+
+final class ReturnNode extends StatementNode implements NodeParent {
+    private final Token keyword;
+    private ExpressionNode returnValue;
+
+    ReturnNode(Token keyword, ExpressionNode returnValue){
+        this.keyword = keyword;
+        this.returnValue = ExpressionNode.adopt(this, returnValue);
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        if (returnValue == null) return new ReturnValue(keyword, null, true);
+        return new ReturnValue(keyword, returnValue.execute(environment), false);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        returnValue = replacement;
+    }
+}
+
+// `return callee(arguments)` in a function, see Interpreter.tailCall
+final class TailCallNode extends StatementNode implements NodeParent {
+    private final Token keyword;
+    private ExpressionNode callee;
+    private final Token closingParen;
+    private final ExpressionNode[] arguments;
+    private final InlineCache initCache;
+
+    TailCallNode(Token keyword, ExpressionNode callee, Token closingParen, ExpressionNode[] arguments, InlineCache initCache){
+        this.keyword = keyword;
+        this.callee = ExpressionNode.adopt(this, callee);
+        this.closingParen = closingParen;
+        this.arguments = ExpressionNode.adoptAll(this, arguments);
+        this.initCache = initCache;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        ArrayList<Object> argumentValues = new ArrayList<>(arguments.length);
+        for (ExpressionNode argument : arguments){
+            argumentValues.add(argument.execute(environment));
+        }
+
+        return Interpreter.tailCall(keyword, closingParen, callee.execute(environment), argumentValues, null, initCache);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (callee == child) callee = replacement;
+        else ExpressionNode.replaceIn(arguments, child, replacement);
+    }
+}
+
+// `return object.name(arguments)` in a function
+final class TailInvokeNode extends StatementNode implements NodeParent {
+    private final Token keyword;
+    private ExpressionNode object;
+    private final Token name;
+    private final InlineCache methodCache;
+    private final Token closingParen;
+    private final ExpressionNode[] arguments;
+    private final InlineCache initCache;
+
+    TailInvokeNode(Token keyword, ExpressionNode object, Token name, InlineCache methodCache, Token closingParen, ExpressionNode[] arguments, InlineCache initCache){
+        this.keyword = keyword;
+        this.object = ExpressionNode.adopt(this, object);
+        this.name = name;
+        this.methodCache = methodCache;
+        this.closingParen = closingParen;
+        this.arguments = ExpressionNode.adoptAll(this, arguments);
+        this.initCache = initCache;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        ArrayList<Object> argumentValues = new ArrayList<>(arguments.length);
+        for (ExpressionNode argument : arguments){
+            argumentValues.add(argument.execute(environment));
+        }
+
+        return Interpreter.tailInvoke(keyword, name, object.execute(environment), closingParen, argumentValues, null, methodCache, initCache);
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        if (object == child) object = replacement;
+        else ExpressionNode.replaceIn(arguments, child, replacement);
+    }
+}
+
+final class ClassNode extends StatementNode implements NodeParent {
+    private final Token name;
+    private final int slot;
+    private final boolean boxed;
+    private ExpressionNode superclass;
+    private final FunctionNode[] methods;
+    private final FunctionNode[] staticMethods;
+
+    ClassNode(Token name, int slot, boolean boxed, ExpressionNode superclass, FunctionNode[] methods, FunctionNode[] staticMethods){
+        this.name = name;
+        this.slot = slot;
+        this.boxed = boxed;
+        this.superclass = ExpressionNode.adopt(this, superclass);
+        this.methods = methods;
+        this.staticMethods = staticMethods;
+    }
+
+    @Override
+    ReturnValue execute(Environment environment){
+        if (boxed) environment.define(slot, name.lexeme, new Upvalue(null));
+
+        Environment methodEnvironment = environment;
+        LoxClass superclassValue = null;
+        if (superclass != null){
+            Object value = superclass.execute(environment);
+            if (!(value instanceof LoxClass)) throw Error.createRuntimeError(name, "superclass has to be a class");
+
+            superclassValue = (LoxClass) value;
+            methodEnvironment = new Environment(environment, 1);
+            methodEnvironment.define("super", new Upvalue(superclassValue));
+        }
+
+        LoxClass class_ = new LoxClass(name, superclassValue, createMethods(methods, methodEnvironment), createMethods(staticMethods, methodEnvironment));
+        if (boxed) environment.assignBoxedAt(0, slot, class_);
+        else environment.define(slot, name.lexeme, class_);
+        return null;
+    }
+
+    private static HashMap<String, LoxFunction> createMethods(FunctionNode[] nodes, Environment environment){
+        HashMap<String, LoxFunction> functions = new HashMap<>();
+        for (FunctionNode node : nodes){
+            functions.put(node.function.name.lexeme, node.createFunction(environment));
+        }
+        return functions;
+    }
+
+    @Override
+    public void replaceChild(ExpressionNode child, ExpressionNode replacement){
+        superclass = replacement;
+    }
+}
@@ -0,0 +1,42 @@
+package lox.lox;
+
+// Runtime counters of the interpreter (--stats), printed to stderr when the program ends
+// ENABLED is a static final read once when the class is initialized: with it false the JIT drops every `if (Stats.ENABLED)`
+// block as dead code, so the counters cost nothing unless asked for
+// The counters are only touched by the thread running the program
+final class Stats {
+
+    // Set by Lox.main before anything refers to this class
+    static final String PROPERTY = "lox.stats";
+    static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    static long environments = 0;
+    // Lookups of a local variable or `this` and how many scopes they walked up in total
+    static long localLookups = 0;
+    static long hops = 0;
+    static long calls = 0;
+    static long instances = 0;
+    static long boundMethods = 0;
+    static long arrayConcatenations = 0;
+    static long arrayCopies = 0;
+    static long stringConcatenations = 0;
+
+    private Stats(){}
+
+    static void report(){
+        System.err.println("--- stats ---");
+        print("environments created", environments);
+        print("local variable lookups", localLookups);
+        System.err.println(String.format("%-28s %16.2f", "average scopes walked", (localLookups == 0) ? 0.0 : (double) hops / localLookups));
+        print("function calls", calls);
+        print("instances created", instances);
+        print("bound methods created", boundMethods);
+        print("array concatenations", arrayConcatenations);
+        print("array buffer copies", arrayCopies);
+        print("string concatenations", stringConcatenations);
+    }
+
+    private static void print(String name, long count){
+        System.err.println(String.format("%-28s %16d", name, count));
+    }
+}
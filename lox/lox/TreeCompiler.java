@@ -0,0 +1,241 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+// Builds the executable node tree for the TreeInterpreter from the resolved Statement/Expression tree
+// Each AST node is converted exactly once, so operator and variable kind are decided here instead of on every evaluation
+class TreeCompiler implements ExpressionVisitor<ExpressionNode>, StatementVisitor<StatementNode>{
+
+    private final Environment globals;
+
+    TreeCompiler(Environment globals){
+        this.globals = globals;
+    }
+
+    StatementNode[] compile(ArrayList<Statement> statements){
+        StatementNode[] nodes = new StatementNode[statements.size()];
+        for (int i=0; i < nodes.length; i++){
+            nodes[i] = compile(statements.get(i));
+        }
+        return nodes;
+    }
+
+    private StatementNode compile(Statement statement){
+        return statement.accept(this);
+    }
+
+    private ExpressionNode compile(Expression expression){
+        return expression.accept(this);
+    }
+
+    private ExpressionNode[] compileAll(ArrayList<Expression> expressions){
+        ExpressionNode[] nodes = new ExpressionNode[expressions.size()];
+        for (int i=0; i < nodes.length; i++){
+            nodes[i] = compile(expressions.get(i));
+        }
+        return nodes;
+    }
+
+    // Visitor methods for statement
+
+    @Override
+    public StatementNode visitExpressionStatement(ExpressionStatement stmt) {
+        return new ExpressionStatementNode(compile(stmt.expression));
+    }
+
+    @Override
+    public StatementNode visitPrintStatement(PrintStatement stmt) {
+        return new PrintNode(compile(stmt.expression));
+    }
+
+    @Override
+    public StatementNode visitVarDecStatement(VarDecStatement stmt) {
+        ExpressionNode initializer = (stmt.initializer == null) ? null : compile(stmt.initializer);
+        return new VarDecNode(stmt.slot, stmt.boxed, stmt.name.lexeme, initializer);
+    }
+
+    @Override
+    public StatementNode visitBlockStatement(BlockStatement stmt) {
+        if (!stmt.ownEnvironment) return new SequenceNode(compile(stmt.statements));
+        return new BlockNode(stmt.localCount, compile(stmt.statements));
+    }
+
+    @Override
+    public StatementNode visitIfElseStatement(IfElseStatement stmt) {
+        StatementNode elseStatement = (stmt.elseStatement == null) ? null : compile(stmt.elseStatement);
+        return new IfElseNode(compile(stmt.expr), compile(stmt.ifStatement), elseStatement);
+    }
+
+    @Override
+    public StatementNode visitWhileStatement(WhileStatement stmt) {
+        if (Interpreter.isAlwaysTrue(stmt.expr)) return new LoopNode(compile(stmt.statement));
+        return new WhileNode(compile(stmt.expr), compile(stmt.statement));
+    }
+
+    @Override
+    public StatementNode visitFunctionStatement(FunctionStatement stmt) {
+        return new FunctionNode(stmt, compile(stmt.body));
+    }
+
+    @Override
+    public StatementNode visitReturnStatement(ReturnStatement stmt) {
+        if (stmt.tailCall){
+            CallExpression expr = (CallExpression) stmt.returnValue;
+            if (expr.callee instanceof GetExpression){
+                GetExpression method = (GetExpression) expr.callee;
+                return new TailInvokeNode(stmt.keyword, compile(method.object), method.name, method.methodCache, expr.closingParen, compileAll(expr.arguments), expr.initCache);
+            }
+            return new TailCallNode(stmt.keyword, compile(expr.callee), expr.closingParen, compileAll(expr.arguments), expr.initCache);
+        }
+
+        ExpressionNode returnValue = (stmt.returnValue == null) ? null : compile(stmt.returnValue);
+        return new ReturnNode(stmt.keyword, returnValue);
+    }
+
+    @Override
+    public StatementNode visitClassStatement(ClassStatement stmt) {
+        ExpressionNode superclass = (stmt.superclass == null) ? null : compile(stmt.superclass);
+        return new ClassNode(stmt.name, stmt.slot, stmt.boxed, superclass, compileMethods(stmt.methods), compileMethods(stmt.staticMethods));
+    }
+
+    private FunctionNode[] compileMethods(ArrayList<FunctionStatement> methods){
+        FunctionNode[] nodes = new FunctionNode[methods.size()];
+        for (int i=0; i < nodes.length; i++){
+            nodes[i] = (FunctionNode) compile(methods.get(i));
+        }
+        return nodes;
+    }
+
+    // Visitor methods for expression
+
+    @Override
+    public ExpressionNode visitBinaryExpression(BinaryExpression expr) {
+        ExpressionNode left = compile(expr.left);
+        ExpressionNode right = compile(expr.right);
+
+        switch (expr.operator.type) {
+            case ADD:
+                return new AddNode(expr.operator, left, right);
+            case SUBTRACT:
+                return new SubtractNode(expr.operator, left, right);
+            case MULTIPLY:
+                return new MultiplyNode(expr.operator, left, right);
+            case DIVIDE:
+                return new DivideNode(expr.operator, left, right);
+            case LT:
+                return new LessNode(expr.operator, left, right);
+            case GT:
+                return new GreaterNode(expr.operator, left, right);
+            case LEQ:
+                return new LessEqualNode(expr.operator, left, right);
+            case GEQ:
+                return new GreaterEqualNode(expr.operator, left, right);
+            case EQ:
+                return new EqualNode(expr.operator, left, right);
+            case NEQ:
+                return new NotEqualNode(expr.operator, left, right);
+            // Unreachable
+            default:
+                return new LiteralNode(null);
+        }
+    }
+
+    @Override
+    public ExpressionNode visitUnaryExpression(UnaryExpression expr) {
+        ExpressionNode expression = compile(expr.expression);
+
+        switch (expr.operator.type) {
+            case SUBTRACT:
+                return new NegateNode(expr.operator, expression);
+            case NOT:
+                return new NotNode(expression);
+            // Unreachable
+            default:
+                return new LiteralNode(null);
+        }
+    }
+
+    @Override
+    public ExpressionNode visitGroupingExpression(GroupingExpression expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public ExpressionNode visitLiteralExpression(LiteralExpression expr) {
+        if (expr.value instanceof Double) return new NumberLiteralNode((Double) expr.value);
+        return new LiteralNode(expr.value);
+    }
+
+    @Override
+    public ExpressionNode visitVariableExpression(VariableExpression expr) {
+        if (expr.upvalue >= 0) return new UpvalueReadNode(expr.upvalue);
+        if (expr.depth < 0) return new GlobalReadNode(globals, expr.name);
+        if (expr.boxed) return new BoxedReadNode(expr.depth, expr.slot);
+        return new LocalReadNode(expr.depth, expr.slot);
+    }
+
+    @Override
+    public ExpressionNode visitAssignmentExpression(AssignmentExpression expr) {
+        ExpressionNode value = compile(expr.value);
+        if (expr.upvalue >= 0) return new UpvalueAssignNode(expr.upvalue, value);
+        if (expr.depth < 0) return new GlobalAssignNode(globals, expr.name, value);
+        if (expr.boxed) return new BoxedAssignNode(expr.depth, expr.slot, value);
+        return new LocalAssignNode(expr.depth, expr.slot, value);
+    }
+
+    @Override
+    public ExpressionNode visitLogicalExpression(LogicalExpression expr) {
+        ExpressionNode left = compile(expr.left);
+        ExpressionNode right = compile(expr.right);
+
+        if (expr.operator.lexeme.equals("and")) return new AndNode(left, right);
+        return new OrNode(left, right);
+    }
+
+    @Override
+    public ExpressionNode visitCallExpression(CallExpression expr) {
+        if (expr.callee instanceof GetExpression){
+            GetExpression method = (GetExpression) expr.callee;
+            return new InvokeNode(compile(method.object), method.name, method.methodCache, expr.closingParen, compileAll(expr.arguments), expr.initCache);
+        }
+        return new CallNode(compile(expr.callee), expr.closingParen, compileAll(expr.arguments), expr.initCache);
+    }
+
+    @Override
+    public ExpressionNode visitGetExpression(GetExpression expr) {
+        return new GetNode(compile(expr.object), expr.name, expr.methodCache);
+    }
+
+    @Override
+    public ExpressionNode visitSetExpression(SetExpression expr) {
+        return new SetNode(compile(expr.object), expr.name, compile(expr.value), expr.ownMethodCache);
+    }
+
+    @Override
+    public ExpressionNode visitThisExpression(ThisExpression expr) {
+        if (expr.upvalue >= 0) return new UpvalueReadNode(expr.upvalue);
+        if (expr.boxed) return new BoxedReadNode(expr.depth, expr.slot);
+        if (expr.depth >= 0) return new LocalReadNode(expr.depth, expr.slot);
+        return new RuntimeErrorNode(expr.keyword, "'this' keyword cannot be used outside of a class");
+    }
+
+    @Override
+    public ExpressionNode visitSuperExpression(SuperExpression expr) {
+        return new SuperNode(expr);
+    }
+
+    @Override
+    public ExpressionNode visitArrayExpression(ArrayExpression expr) {
+        return new ArrayNode(compileAll(expr.elements));
+    }
+
+    @Override
+    public ExpressionNode visitArrayElementExpression(ArrayElementExpression expr) {
+        return new ArrayElementNode(expr.leftBracket, compile(expr.arrayExpression), compile(expr.index));
+    }
+
+    @Override
+    public ExpressionNode visitArrayElementAssignmentExpression(ArrayElementAssignmentExpression expr) {
+        return new ArrayElementAssignNode(expr.leftBracket, compile(expr.arrayExpression), compile(expr.index), compile(expr.value));
+    }
+}
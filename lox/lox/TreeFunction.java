@@ -0,0 +1,22 @@
+package lox.lox;
+
+// Lox function whose body has been built into executable nodes by the TreeCompiler
+class TreeFunction extends LoxFunction{
+
+    private final StatementNode body;
+
+    TreeFunction(FunctionStatement function, Upvalue[] upvalues, FuncType type, LoxInstance receiver, StatementNode body){
+        super(function, upvalues, type, receiver);
+        this.body = body;
+    }
+
+    @Override
+    LoxFunction withUpvalues(Upvalue[] upvalues, LoxInstance receiver){
+        return new TreeFunction(this.function, upvalues, this.type, receiver, this.body);
+    }
+
+    @Override
+    ReturnValue execute(Environment environment, Interpreter interpreter){
+        return body.execute(environment);
+    }
+}
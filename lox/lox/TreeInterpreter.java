@@ -0,0 +1,33 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+import lox.error.RuntimeError;
+
+// Runs the program as a tree of executable nodes instead of visiting the AST on every evaluation
+public class TreeInterpreter {
+
+    private final ArrayList<Statement> statements;
+    private final Environment globals;
+
+    public TreeInterpreter(ArrayList<Statement> stmnts, Environment env){
+        statements = stmnts;
+        globals = env;
+
+        Interpreter.addNativeFunctions(globals);
+    }
+
+    protected void interpret(){
+        StatementNode[] nodes = new TreeCompiler(globals).compile(statements);
+        try{
+            for (StatementNode node : nodes){
+                ReturnValue ret = node.execute(globals);
+                if (ret != null){
+                    Interpreter.reportReturnOutsideFunction(ret);
+                    break;
+                }
+            }
+        } catch (RuntimeError error){
+        }
+    }
+}
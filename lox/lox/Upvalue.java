@@ -0,0 +1,12 @@
+package lox.lox;
+
+// Box of a local variable that a closure captured
+// The variable's slot holds the box instead of the value, so the function declaring it and every closure capturing it
+// (through their flat upvalues arrays) share one value, and closures keep nothing else of the enclosing environments alive
+final class Upvalue {
+    Object value;
+
+    Upvalue(Object value){
+        this.value = value;
+    }
+}
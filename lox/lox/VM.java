@@ -0,0 +1,646 @@
+package lox.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import lox.error.Error;
+import lox.error.RuntimeError;
+import lox.scanner.Token;
+
+// Stack based virtual machine running the bytecode produced by the Compiler
+// A call frame keeps its locals on the stack from its base: `this` for methods, the parameters and then the other locals
+// of the function (for the script, those of its blocks), its values go on top of them
+// Numbers are never boxed on the stack: a slot holding one has UNBOXED in `stack` and the number in the same slot of `numbers`.
+// Arithmetic, comparisons, locals, arguments and return values work on them unboxed, a Double is only created when a
+// number leaves the stack (globals, fields, array elements, captured variables, natives and print)
+public class VM {
+
+    private static final int FRAMES_MAX = 65536;
+    private static final Upvalue[] NO_UPVALUES = new Upvalue[0];
+    // Marks a stack slot whose value is the number in the same slot of `numbers`
+    private static final Object UNBOXED = new Object();
+
+    // Kind of a captured variable in the captures of CLOSURE, any other is the depth in the frame's environments
+    static final int CAPTURE_UPVALUE = -1;
+    static final int CAPTURE_LOCAL = -2;
+
+    final Environment globals;
+    private Object[] stack = new Object[256];
+    private double[] numbers = new double[256];
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+    // Stack height when a native function was called, a compiled function it calls back runs above it (see call)
+    private int top = 0;
+
+    public VM(Environment globals){
+        this.globals = globals;
+        Interpreter.addNativeFunctions(globals);
+    }
+
+    protected void interpret(Chunk script){
+        frameCount = 0;
+        try{
+            pushFrame(null, script, 0, null, null);
+            run(0);
+        } catch (RuntimeError error){
+        }
+    }
+
+    // A compiled function called from Java rather than by CALL: it runs in a nested run() above the values of the
+    // frame that called out, until it returns
+    Object call(VMFunction function, LoxInstance receiver, ArrayList<Object> arguments){
+        int base = top;
+        pushFrame(function, function.chunk, base, function.function.name, receiver);
+
+        int slot = base;
+        if (function.type == FuncType.METHOD || function.type == FuncType.INIT) stack[slot++] = receiver;
+        for (Object argument : arguments){
+            store(stack, numbers, slot++, argument);
+        }
+        for (int boxed : function.function.boxedSlots){
+            stack[base + boxed] = new Upvalue(load(stack, numbers, base + boxed));
+        }
+        return run(frameCount - 1);
+    }
+
+    // Runs until the frame below exitDepth returns, with the value it returns
+    @SuppressWarnings("fallthrough")
+    private Object run(int exitDepth){
+        CallFrame frame = frames[frameCount - 1];
+        byte[] code = frame.chunk.code;
+        Token[] tokens = frame.chunk.tokens;
+        Object[] constants = frame.chunk.constants;
+        Environment environment = frame.environment;
+        Upvalue[] upvalues = (frame.function == null) ? NO_UPVALUES : frame.function.upvalues;
+        Object[] stack = this.stack;
+        double[] numbers = this.numbers;
+        int base = frame.base;
+        int ip = 0;
+        int sp = base + frame.chunk.localCount;
+        // Set by INVOKE for the CALL right after it
+        LoxInstance receiver = null;
+
+        while (true){
+            switch (code[ip++]) {
+
+                // Constants and literals
+
+                case OpCode.CONSTANT:
+                    stack[sp++] = constants[readShort(code, ip)];
+                    ip += 2;
+                    break;
+                case OpCode.NUMBER:
+                    stack[sp] = UNBOXED;
+                    numbers[sp++] = (double) constants[readShort(code, ip)];
+                    ip += 2;
+                    break;
+                case OpCode.NIL:
+                    stack[sp++] = null; break;
+                case OpCode.TRUE:
+                    stack[sp++] = Boolean.TRUE; break;
+                case OpCode.FALSE:
+                    stack[sp++] = Boolean.FALSE; break;
+                case OpCode.POP:
+                    sp--; break;
+
+                // Variables
+
+                case OpCode.GET_LOCAL: {
+                    int slot = base + readShort(code, ip);
+                    stack[sp] = stack[slot];
+                    numbers[sp++] = numbers[slot];
+                    ip += 2;
+                    break;
+                }
+                case OpCode.SET_LOCAL: {
+                    int slot = base + readShort(code, ip);
+                    stack[slot] = stack[sp - 1];
+                    numbers[slot] = numbers[sp - 1];
+                    ip += 2;
+                    break;
+                }
+                case OpCode.GET_GLOBAL:
+                    store(stack, numbers, sp++, globals.get((Token) constants[readShort(code, ip)]));
+                    ip += 2;
+                    break;
+                case OpCode.SET_GLOBAL:
+                    globals.assign((Token) constants[readShort(code, ip)], load(stack, numbers, sp - 1));
+                    ip += 2;
+                    break;
+                case OpCode.DEFINE:
+                    sp--;
+                    globals.define((String) constants[readShort(code, ip)], load(stack, numbers, sp));
+                    ip += 2;
+                    break;
+                case OpCode.CLEAR_LOCALS:
+                    Arrays.fill(stack, base, base + readShort(code, ip), null);
+                    ip += 2;
+                    break;
+                case OpCode.POP_ENV:
+                    environment = environment.superEnvironment; break;
+
+                // Operators, numbers never go through the Interpreter's helpers
+
+                case OpCode.ADD:
+                    sp--;
+                    if (stack[sp - 1] == UNBOXED && stack[sp] == UNBOXED) numbers[sp - 1] += numbers[sp];
+                    else store(stack, numbers, sp - 1, Interpreter.add(tokens[ip - 1], load(stack, numbers, sp - 1), load(stack, numbers, sp)));
+                    break;
+                case OpCode.SUBTRACT:
+                    sp--;
+                    if (stack[sp - 1] != UNBOXED || stack[sp] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    numbers[sp - 1] -= numbers[sp];
+                    break;
+                case OpCode.MULTIPLY:
+                    sp--;
+                    if (stack[sp - 1] != UNBOXED || stack[sp] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    numbers[sp - 1] *= numbers[sp];
+                    break;
+                case OpCode.DIVIDE:
+                    sp--;
+                    if (stack[sp - 1] != UNBOXED || stack[sp] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    if (numbers[sp] == 0) throw Interpreter.createZeroDivisorError(tokens[ip - 1]);
+                    numbers[sp - 1] /= numbers[sp];
+                    break;
+                case OpCode.LT:
+                    sp--;
+                    if (stack[sp - 1] != UNBOXED || stack[sp] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    stack[sp - 1] = numbers[sp - 1] < numbers[sp];
+                    break;
+                case OpCode.GT:
+                    sp--;
+                    if (stack[sp - 1] != UNBOXED || stack[sp] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    stack[sp - 1] = numbers[sp - 1] > numbers[sp];
+                    break;
+                case OpCode.LEQ:
+                    sp--;
+                    if (stack[sp - 1] != UNBOXED || stack[sp] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    stack[sp - 1] = numbers[sp - 1] <= numbers[sp];
+                    break;
+                case OpCode.GEQ:
+                    sp--;
+                    if (stack[sp - 1] != UNBOXED || stack[sp] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    stack[sp - 1] = numbers[sp - 1] >= numbers[sp];
+                    break;
+                case OpCode.EQ:
+                    sp--;
+                    stack[sp - 1] = isEqual(stack, numbers, sp - 1, sp);
+                    break;
+                case OpCode.NEQ:
+                    sp--;
+                    stack[sp - 1] = !isEqual(stack, numbers, sp - 1, sp);
+                    break;
+                case OpCode.NEGATE:
+                    if (stack[sp - 1] != UNBOXED) throw Interpreter.createNumberOperandError(tokens[ip - 1]);
+                    numbers[sp - 1] = -numbers[sp - 1];
+                    break;
+                case OpCode.NOT:
+                    // UNBOXED is neither nil nor a Boolean, so it is truthy like every number
+                    stack[sp - 1] = !Interpreter.truthOrFalse(stack[sp - 1]);
+                    break;
+
+                // Control flow
+
+                case OpCode.JUMP:
+                    ip += 2 + readShort(code, ip);
+                    break;
+                case OpCode.JUMP_IF_FALSE:
+                    if (Interpreter.truthOrFalse(stack[sp - 1])) ip += 2;
+                    else ip += 2 + readShort(code, ip);
+                    break;
+                case OpCode.JUMP_IF_TRUE:
+                    if (Interpreter.truthOrFalse(stack[sp - 1])) ip += 2 + readShort(code, ip);
+                    else ip += 2;
+                    break;
+                case OpCode.POP_JUMP_IF_FALSE:
+                    if (Interpreter.truthOrFalse(stack[--sp])) ip += 2;
+                    else ip += 2 + readShort(code, ip);
+                    break;
+                case OpCode.LOOP:
+                    ip = ip + 2 - readShort(code, ip);
+                    break;
+
+                // Functions
+
+                case OpCode.INVOKE: {
+                    Token name = (Token) constants[readShort(code, ip)];
+                    InlineCache methodCache = (InlineCache) constants[readShort(code, ip + 2)];
+                    ip += 4;
+
+                    Object object = stack[sp - 1];
+                    LoxFunction method = Interpreter.methodToInvoke(object, methodCache);
+                    if (method != null){
+                        receiver = (LoxInstance) object;
+                        stack[sp - 1] = method;
+                    } else {
+                        store(stack, numbers, sp - 1, Interpreter.getProperty(name, load(stack, numbers, sp - 1), methodCache));
+                    }
+                    break;
+                }
+                case OpCode.TAIL_CALL:
+                case OpCode.CALL: {
+                    boolean tailCall = code[ip - 1] == OpCode.TAIL_CALL;
+                    int argumentCount = code[ip] & 0xff;
+                    Token closingParen = tokens[ip];
+                    InlineCache initCache = (InlineCache) constants[readShort(code, ip + 1)];
+                    ip += 3;
+                    Object callee = stack[--sp];
+
+                    VMFunction function = null;
+                    LoxInstance instance = null;
+                    if (callee instanceof VMFunction){
+                        function = (VMFunction) callee;
+                        Interpreter.checkArity(closingParen, function.arity(), argumentCount);
+
+                        // An invoked method runs on the object of the INVOKE, a bound method on its own receiver
+                        if (receiver != null){
+                            instance = receiver;
+                            receiver = null;
+                        } else instance = function.receiver;
+
+                    } else if (callee instanceof LoxClass){
+                        LoxFunction init = initCache.lookup((LoxClass) callee);
+                        Interpreter.checkArity(closingParen, (init == null) ? 0 : init.arity(), argumentCount);
+                        instance = new LoxInstance((LoxClass) callee);
+
+                        if (init == null){
+                            sp -= argumentCount;
+                            stack[sp++] = instance;
+                            break;
+                        }
+                        function = (VMFunction) init;
+
+                    } else if (callee instanceof LoxCallable){
+                        // Native functions
+                        Interpreter.checkArity(closingParen, (LoxCallable) callee, argumentCount);
+                        ArrayList<Object> arguments = new ArrayList<>(argumentCount);
+                        for (int i = sp - argumentCount; i < sp; i++){
+                            arguments.add(load(stack, numbers, i));
+                        }
+                        sp -= argumentCount;
+                        top = sp;
+                        Object result = Interpreter.callFunction((LoxCallable) callee, null, arguments, closingParen);
+                        // A compiled function the native called back may have grown the stack
+                        stack = this.stack;
+                        numbers = this.numbers;
+                        store(stack, numbers, sp++, result);
+                        break;
+                    } else throw Error.createRuntimeError(closingParen, "Object is not callable");
+
+                    sp -= argumentCount;
+                    if (tailCall){
+                        // The caller's frame is done with, the callee returns straight to where it would have
+                        replaceFrame(frame, function, instance);
+                    } else {
+                        frame.ip = ip;
+                        frame.environment = environment;
+                        frame = pushFrame(function, function.chunk, sp, closingParen, instance);
+                    }
+                    stack = this.stack;
+                    numbers = this.numbers;
+                    base = frame.base;
+
+                    // Same locals as LoxFunction.callEnvironment: the arguments move to the start of the frame, after `this` for methods
+                    if (function.type == FuncType.METHOD || function.type == FuncType.INIT){
+                        System.arraycopy(stack, sp, stack, base + 1, argumentCount);
+                        System.arraycopy(numbers, sp, numbers, base + 1, argumentCount);
+                        stack[base] = instance;
+                    } else if (sp != base){
+                        System.arraycopy(stack, sp, stack, base, argumentCount);
+                        System.arraycopy(numbers, sp, numbers, base, argumentCount);
+                    }
+                    for (int slot : function.function.boxedSlots){
+                        stack[base + slot] = new Upvalue(load(stack, numbers, base + slot));
+                    }
+
+                    code = frame.chunk.code;
+                    tokens = frame.chunk.tokens;
+                    constants = frame.chunk.constants;
+                    environment = null;
+                    upvalues = function.upvalues;
+                    sp = base + frame.chunk.localCount;
+                    ip = 0;
+                    break;
+                }
+                case OpCode.CLOSURE: {
+                    VMFunction function = (VMFunction) constants[readShort(code, ip)];
+                    Upvalue[] captured = capture((int[]) constants[readShort(code, ip + 2)], stack, base, environment, upvalues);
+                    stack[sp++] = function.closure(captured, this);
+                    ip += 4;
+                    break;
+                }
+                case OpCode.CHECK_INIT_RETURN:
+                    if (stack[sp - 1] != frame.receiver)
+                        throw Error.createRuntimeError(tokens[ip - 1], "Cannot return this kind of value from init method");
+                    break;
+                case OpCode.RETURN_INIT:
+                    stack[sp++] = frame.receiver;
+                    // fall through
+                case OpCode.RETURN: {
+                    Object result = stack[--sp];
+                    double number = numbers[sp];
+                    frameCount--;
+                    // The script's own frame is not in the profile
+                    if (frame.function != null && Profiler.enabled) Profiler.exit();
+                    if (frameCount == exitDepth) return (result == UNBOXED) ? (Object) number : result;
+
+                    sp = frame.base;
+                    stack[sp] = result;
+                    numbers[sp++] = number;
+
+                    frame = frames[frameCount - 1];
+                    code = frame.chunk.code;
+                    tokens = frame.chunk.tokens;
+                    constants = frame.chunk.constants;
+                    environment = frame.environment;
+                    upvalues = (frame.function == null) ? NO_UPVALUES : frame.function.upvalues;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+
+                // Classes and instances
+
+                case OpCode.INHERIT:
+                    if (!(stack[sp - 1] instanceof LoxClass)) throw Error.createRuntimeError(tokens[ip - 1], "superclass has to be a class");
+                    Environment superEnvironment = new Environment(NO_UPVALUES, 1);
+                    superEnvironment.superEnvironment = environment;
+                    superEnvironment.define("super", new Upvalue(stack[sp - 1]));
+                    environment = superEnvironment;
+                    break;
+                case OpCode.CLASS: {
+                    Token name = (Token) constants[readShort(code, ip)];
+                    LoxClass superclass = (code[ip + 2] == 1) ? (LoxClass) stack[--sp] : null;
+                    ip += 3;
+                    stack[sp++] = new LoxClass(name, superclass, new HashMap<>(), new HashMap<>());
+                    break;
+                }
+                case OpCode.METHOD: {
+                    LoxFunction method = (LoxFunction) stack[--sp];
+                    ((LoxClass) stack[sp - 1]).methods.put((String) constants[readShort(code, ip)], method);
+                    ip += 2;
+                    break;
+                }
+                case OpCode.STATIC_METHOD: {
+                    LoxFunction method = (LoxFunction) stack[--sp];
+                    ((LoxClass) stack[sp - 1]).staticMethods.put((String) constants[readShort(code, ip)], method);
+                    ip += 2;
+                    break;
+                }
+                case OpCode.GET_PROPERTY: {
+                    Object object = load(stack, numbers, sp - 1);
+                    store(stack, numbers, sp - 1, Interpreter.getProperty((Token) constants[readShort(code, ip)], object, (InlineCache) constants[readShort(code, ip + 2)]));
+                    ip += 4;
+                    break;
+                }
+                case OpCode.SET_PROPERTY: {
+                    Token name = (Token) constants[readShort(code, ip)];
+                    sp--;
+                    Interpreter.checkIfInstance(name, load(stack, numbers, sp - 1)).set(name, load(stack, numbers, sp), (InlineCache) constants[readShort(code, ip + 2)]);
+                    stack[sp - 1] = stack[sp];
+                    numbers[sp - 1] = numbers[sp];
+                    ip += 4;
+                    break;
+                }
+                case OpCode.CHECK_INSTANCE:
+                    Interpreter.checkIfInstance((Token) constants[readShort(code, ip)], load(stack, numbers, sp - 1));
+                    ip += 2;
+                    break;
+                case OpCode.GET_SUPER: {
+                    // "super" is always an upvalue of the method
+                    SuperExpression expr = (SuperExpression) constants[readShort(code, ip)];
+                    stack[sp - 1] = Interpreter.getSuperMethod(expr, (LoxClass) upvalues[expr.upvalue].value, (LoxInstance) stack[sp - 1]);
+                    ip += 2;
+                    break;
+                }
+
+                // Arrays
+
+                case OpCode.ARRAY: {
+                    int count = readShort(code, ip);
+                    ip += 2;
+                    ArrayList<Object> values = new ArrayList<>(count);
+                    for (int i = sp - count; i < sp; i++){
+                        values.add(load(stack, numbers, i));
+                    }
+                    sp -= count;
+                    stack[sp++] = new LoxArray(values);
+                    break;
+                }
+                case OpCode.ARRAY_EXTEND: {
+                    int count = readShort(code, ip);
+                    ip += 2;
+                    LoxArray array = (LoxArray) stack[sp - count - 1];
+                    for (int i = sp - count; i < sp; i++){
+                        array.add(load(stack, numbers, i));
+                    }
+                    sp -= count;
+                    break;
+                }
+                case OpCode.GET_ELEMENT: {
+                    sp--;
+                    LoxArray array = Interpreter.checkIfArrayToAccess(tokens[ip - 1], load(stack, numbers, sp - 1));
+                    int index = (stack[sp] == UNBOXED)
+                        ? Interpreter.checkElementIndex(tokens[ip - 1], array, numbers[sp])
+                        : Interpreter.checkElementIndex(tokens[ip - 1], array, stack[sp]);
+                    store(stack, numbers, sp - 1, array.get(index));
+                    break;
+                }
+                case OpCode.SET_ELEMENT: {
+                    sp -= 2;
+                    LoxArray array = Interpreter.checkIfArrayToAssign(tokens[ip - 1], load(stack, numbers, sp - 1));
+                    int index = (stack[sp] == UNBOXED)
+                        ? Interpreter.checkAssignmentIndex(tokens[ip - 1], array, numbers[sp])
+                        : Interpreter.checkAssignmentIndex(tokens[ip - 1], array, stack[sp]);
+                    Interpreter.setElement(array, index, load(stack, numbers, sp + 1));
+                    stack[sp - 1] = stack[sp + 1];
+                    numbers[sp - 1] = numbers[sp + 1];
+                    break;
+                }
+                case OpCode.CHECK_ARRAY_GET:
+                    Interpreter.checkIfArrayToAccess(tokens[ip - 1], load(stack, numbers, sp - 1));
+                    break;
+                case OpCode.CHECK_ARRAY_SET:
+                    Interpreter.checkIfArrayToAssign(tokens[ip - 1], load(stack, numbers, sp - 1));
+                    break;
+                case OpCode.CHECK_ASSIGNMENT_INDEX:
+                    if (stack[sp - 1] == UNBOXED) Interpreter.checkAssignmentIndex(tokens[ip - 1], (LoxArray) stack[sp - 2], numbers[sp - 1]);
+                    else Interpreter.checkAssignmentIndex(tokens[ip - 1], (LoxArray) stack[sp - 2], stack[sp - 1]);
+                    break;
+
+                // Statements and errors
+
+                case OpCode.PRINT:
+                    sp--;
+                    Output.println(Interpreter.stringify(load(stack, numbers, sp)));
+                    break;
+                case OpCode.RUNTIME_ERROR:
+                    throw Error.createRuntimeError(tokens[ip - 1], (String) constants[readShort(code, ip)]);
+
+                // Captured variables
+
+                case OpCode.GET_UPVALUE:
+                    store(stack, numbers, sp++, upvalues[readShort(code, ip)].value);
+                    ip += 2;
+                    break;
+                case OpCode.SET_UPVALUE:
+                    upvalues[readShort(code, ip)].value = load(stack, numbers, sp - 1);
+                    ip += 2;
+                    break;
+                case OpCode.GET_BOXED:
+                    store(stack, numbers, sp++, ((Upvalue) stack[base + readShort(code, ip)]).value);
+                    ip += 2;
+                    break;
+                case OpCode.SET_BOXED:
+                    ((Upvalue) stack[base + readShort(code, ip)]).value = load(stack, numbers, sp - 1);
+                    ip += 2;
+                    break;
+                case OpCode.BOX:
+                    stack[sp - 1] = new Upvalue(load(stack, numbers, sp - 1));
+                    break;
+
+                // Superinstructions
+
+                case OpCode.SET_LOCAL_POP: {
+                    int slot = base + readShort(code, ip);
+                    sp--;
+                    stack[slot] = stack[sp];
+                    numbers[slot] = numbers[sp];
+                    ip += 2;
+                    break;
+                }
+                case OpCode.SET_GLOBAL_POP:
+                    sp--;
+                    globals.assign((Token) constants[readShort(code, ip)], load(stack, numbers, sp));
+                    ip += 2;
+                    break;
+                case OpCode.JUMP_IF_NOT_LT:
+                    sp -= 2;
+                    if (stack[sp] != UNBOXED || stack[sp + 1] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    if (numbers[sp] < numbers[sp + 1]) ip += 2;
+                    else ip += 2 + readShort(code, ip);
+                    break;
+                case OpCode.JUMP_IF_NOT_GT:
+                    sp -= 2;
+                    if (stack[sp] != UNBOXED || stack[sp + 1] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    if (numbers[sp] > numbers[sp + 1]) ip += 2;
+                    else ip += 2 + readShort(code, ip);
+                    break;
+                case OpCode.JUMP_IF_NOT_LEQ:
+                    sp -= 2;
+                    if (stack[sp] != UNBOXED || stack[sp + 1] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    if (numbers[sp] <= numbers[sp + 1]) ip += 2;
+                    else ip += 2 + readShort(code, ip);
+                    break;
+                case OpCode.JUMP_IF_NOT_GEQ:
+                    sp -= 2;
+                    if (stack[sp] != UNBOXED || stack[sp + 1] != UNBOXED) throw Interpreter.createNumberOperandsError(tokens[ip - 1]);
+                    if (numbers[sp] >= numbers[sp + 1]) ip += 2;
+                    else ip += 2 + readShort(code, ip);
+                    break;
+
+                // Unreachable
+                default:
+                    throw new IllegalStateException(String.format("Unknown opcode %d in %s", code[ip - 1], frame.chunk.name));
+            }
+        }
+    }
+
+    // Helper methods
+
+    private static int readShort(byte[] code, int ip){
+        return ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+    }
+
+    // The value in a stack slot as the rest of the interpreter sees it, numbers boxed
+    private static Object load(Object[] stack, double[] numbers, int slot){
+        Object value = stack[slot];
+        return (value == UNBOXED) ? (Object) numbers[slot] : value;
+    }
+
+    // Puts a value from outside the stack in a slot, unboxing it if it is a number
+    private static void store(Object[] stack, double[] numbers, int slot, Object value){
+        if (value instanceof Double){
+            stack[slot] = UNBOXED;
+            numbers[slot] = (double) value;
+        } else stack[slot] = value;
+    }
+
+    // Interpreter.isEqual for two stack slots, numbers are equal when their Doubles would be
+    private static boolean isEqual(Object[] stack, double[] numbers, int left, int right){
+        boolean leftNumber = stack[left] == UNBOXED;
+        boolean rightNumber = stack[right] == UNBOXED;
+        if (leftNumber && rightNumber) return Double.doubleToLongBits(numbers[left]) == Double.doubleToLongBits(numbers[right]);
+        if (leftNumber || rightNumber) return false;
+        return Interpreter.isEqual(stack[left], stack[right]);
+    }
+
+    // Upvalues of a closure created by the frame with the locals at base and the environments in environment
+    // captures holds a (kind, index) pair per upvalue: (CAPTURE_LOCAL, slot) for a boxed local of the frame,
+    // (CAPTURE_UPVALUE, index) for an upvalue of the running function and (depth, slot) for "super"
+    private static Upvalue[] capture(int[] captures, Object[] stack, int base, Environment environment, Upvalue[] upvalues){
+        if (captures.length == 0) return NO_UPVALUES;
+
+        Upvalue[] captured = new Upvalue[captures.length / 2];
+        for (int i=0; i < captured.length; i++){
+            int kind = captures[2 * i];
+            int index = captures[2 * i + 1];
+            if (kind == CAPTURE_LOCAL) captured[i] = (Upvalue) stack[base + index];
+            else if (kind == CAPTURE_UPVALUE) captured[i] = upvalues[index];
+            else captured[i] = (Upvalue) environment.getAt(kind, index);
+        }
+        return captured;
+    }
+
+    // Runs function in the frame instead of the one it was running, the frame keeps its base on the stack
+    private void replaceFrame(CallFrame frame, VMFunction function, LoxInstance receiver){
+        if (Profiler.enabled) Profiler.exit();
+
+        growStack(frame.base, function.chunk);
+
+        frame.function = function;
+        frame.receiver = receiver;
+        frame.chunk = function.chunk;
+        frame.ip = 0;
+        frame.environment = null;
+
+        if (Stats.ENABLED) Stats.calls++;
+        if (Profiler.enabled) Profiler.enter(function.function.name);
+    }
+
+    private CallFrame pushFrame(LoxFunction function, Chunk chunk, int base, Token token, LoxInstance receiver){
+        if (frameCount == FRAMES_MAX) throw Error.createRuntimeError(token, "Stack overflow");
+        if (frameCount == frames.length) frames = Arrays.copyOf(frames, frameCount * 2);
+
+        growStack(base, chunk);
+
+        CallFrame frame = frames[frameCount];
+        if (frame == null){
+            frame = new CallFrame();
+            frames[frameCount] = frame;
+        }
+        frame.function = function;
+        frame.receiver = receiver;
+        frame.chunk = chunk;
+        frame.ip = 0;
+        frame.environment = null;
+        frame.base = base;
+
+        // The script's own frame is the profile's root
+        if (Stats.ENABLED && function != null) Stats.calls++;
+        if (function != null && Profiler.enabled) Profiler.enter(function.function.name);
+        frameCount++;
+        return frame;
+    }
+
+    // Room for the locals and values of chunk's frame at base, and one extra slot for the value pushed by RETURN_INIT
+    private void growStack(int base, Chunk chunk){
+        int needed = base + chunk.localCount + chunk.maxStack + 1;
+        if (needed > stack.length){
+            int length = Math.max(needed, stack.length * 2);
+            stack = Arrays.copyOf(stack, length);
+            numbers = Arrays.copyOf(numbers, length);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package lox.lox;
+
+import java.util.ArrayList;
+
+// Lox function whose body has been compiled to bytecode for the VM
+class VMFunction extends LoxFunction{
+
+    final Chunk chunk;
+    // VM running the closure, null for the functions in the Compiler's constants, which only CLOSURE uses
+    private final VM vm;
+
+    VMFunction(FunctionStatement function, Upvalue[] upvalues, FuncType type, LoxInstance receiver, Chunk chunk, VM vm){
+        super(function, upvalues, type, receiver);
+        this.chunk = chunk;
+        this.vm = vm;
+    }
+
+    @Override
+    LoxFunction withUpvalues(Upvalue[] upvalues, LoxInstance receiver){
+        return new VMFunction(this.function, upvalues, this.type, receiver, this.chunk, this.vm);
+    }
+
+    // Closure of the function made by CLOSURE on the VM running it
+    VMFunction closure(Upvalue[] upvalues, VM vm){
+        return new VMFunction(this.function, upvalues, this.type, null, this.chunk, vm);
+    }
+
+    // The VM's CALL pushes a frame for the function, a call from anywhere else runs it on the VM too
+    @Override
+    Object call(LoxInstance receiver, Interpreter interpreter, ArrayList<Object> arguments) {
+        return vm.call(this, receiver, arguments);
+    }
+}
@@ -1,20 +1,30 @@
 package lox.scanner;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
 
 import lox.error.Error;
 
 import static lox.scanner.TokenType.*;
 
-public class LoxScanner{
+// Either scans the whole source up front (scanTokens) or hands out one token at a time as a pull iterator,
+// so the Parser can consume a large file while it is being scanned
+public class LoxScanner implements Iterator<Token>{
 
-    private final String LoxCode;
+    private final CharSequence LoxCode;
     private int line = 1;
     private int currentTokenStartIndex = 0;
     private int currentIndex = 0;
     private final ArrayList<Token> tokens = new ArrayList<>();
+    // Token produced by the last scanToken call, if any
+    private Token scanned = null;
+    private boolean returnedEOF = false;
     private final static HashMap<String, TokenType> keywordToTokenType = new HashMap<>();
+    // Lexeme of every symbol and operator token, shared by all tokens of that type
+    private final static EnumMap<TokenType, String> fixedLexemes = new EnumMap<>(TokenType.class);
+    private final SymbolTable symbols = new SymbolTable();
 
     // static initalization block 
     static{
@@ -35,19 +45,60 @@ public class LoxScanner{
         keywordToTokenType.put("false", FALSE);
         keywordToTokenType.put("nil", NIL);
         keywordToTokenType.put("static", STATIC);
+
+        fixedLexemes.put(LEFT_BRACE, "{");
+        fixedLexemes.put(RIGHT_BRACE, "}");
+        fixedLexemes.put(LEFT_BRACKET, "[");
+        fixedLexemes.put(RIGHT_BRACKET, "]");
+        fixedLexemes.put(LEFT_PAREN, "(");
+        fixedLexemes.put(RIGHT_PAREN, ")");
+        fixedLexemes.put(SEMICOLON, ";");
+        fixedLexemes.put(DOT, ".");
+        fixedLexemes.put(COMMA, ",");
+        fixedLexemes.put(ADD, "+");
+        fixedLexemes.put(SUBTRACT, "-");
+        fixedLexemes.put(MULTIPLY, "*");
+        fixedLexemes.put(DIVIDE, "/");
+        fixedLexemes.put(GT, ">");
+        fixedLexemes.put(GEQ, ">=");
+        fixedLexemes.put(LT, "<");
+        fixedLexemes.put(LEQ, "<=");
+        fixedLexemes.put(ASSIGNMENT, "=");
+        fixedLexemes.put(EQ, "==");
+        fixedLexemes.put(NOT, "!");
+        fixedLexemes.put(NEQ, "!=");
     }
 
-    public LoxScanner(String LoxCode){
+    public LoxScanner(CharSequence LoxCode){
         this.LoxCode = LoxCode;
     }
 
     public ArrayList<Token> scanTokens(){
+        while (hasNext()){
+            tokens.add(next());
+        }
+        return tokens;
+    }
+
+    @Override
+    public boolean hasNext(){
+        return !returnedEOF;
+    }
+
+    // Scans up to and including the next token, EOF once the source is used up
+    @Override
+    public Token next(){
         while (!outOfTokensToConsume()){
             currentTokenStartIndex = currentIndex;
             scanToken();
+            if (scanned != null){
+                Token token = scanned;
+                scanned = null;
+                return token;
+            }
         }
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        returnedEOF = true;
+        return new Token(EOF, "", null, line);
     }
 
     private void scanToken(){
@@ -130,8 +181,8 @@ public class LoxScanner{
 
                if (cannotPeekAhead()) reportError(line, "Unterminated String");
                else{
-                    String lexeme = LoxCode.substring(currentTokenStartIndex, currentIndex+1);
-                    addToken(STRING, lexeme);
+                    String lexeme = substring(currentTokenStartIndex, currentIndex+1);
+                    addToken(STRING, lexeme, lexeme);
                     // consume ending '"'
                     currentIndex++;
                 }
@@ -144,13 +195,9 @@ public class LoxScanner{
                         currentIndex++;
                     }
 
-                    String lexeme = LoxCode.substring(currentTokenStartIndex, currentIndex+1);
+                    String lexeme = symbols.intern(LoxCode, currentTokenStartIndex, currentIndex+1);
                     TokenType lexemeToken = keywordToTokenType.get(lexeme);
-                    if (lexemeToken == null){
-                        addToken(IDENTIFIER);
-                    } else {
-                        addToken(lexemeToken);
-                    }
+                    addToken((lexemeToken == null) ? IDENTIFIER : lexemeToken, lexeme, null);
 
                 } else if (isNum(currentChar)){
 
@@ -165,8 +212,8 @@ public class LoxScanner{
                     else if (LoxCode.charAt(currentIndex) == '.') reportError(line, "Number literal cannot end with a '.'");
 
                     else{ 
-                        Double value = Double.parseDouble(LoxCode.substring(currentTokenStartIndex, currentIndex+1));
-                        addToken(NUMBER, value);
+                        String lexeme = substring(currentTokenStartIndex, currentIndex+1);
+                        addToken(NUMBER, lexeme, Double.parseDouble(lexeme));
                     }
 
                 } else {
@@ -177,13 +224,19 @@ public class LoxScanner{
     }
 
     // Helper methods
+    // Symbols and operators
     private void addToken(TokenType type){
-        addToken(type, null);
+        addToken(type, fixedLexemes.get(type), null);
+    }
+
+    // The lexeme runs from currentTokenStartIndex to currentIndex
+    private void addToken(TokenType type, String lexeme, Object literal){
+        currentIndex++;
+        scanned = new Token(type, lexeme, literal, line);
     }
 
-    private void addToken(TokenType type, Object literal){
-        String lexeme = LoxCode.substring(currentTokenStartIndex, ++currentIndex);
-        tokens.add(new Token(type, lexeme, literal, line));
+    private String substring(int start, int end){
+        return LoxCode.subSequence(start, end).toString();
     }
 
     private boolean outOfTokensToConsume(){
@@ -0,0 +1,61 @@
+package lox.scanner;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Source file read through a memory mapping instead of being copied into a String
+// Characters are indexed by byte: every character the scanner looks for is ASCII, and in the supported charsets
+// the bytes of a non-ASCII character are never ASCII, so only the lexemes taken out of the file need decoding
+public class MappedSource implements CharSequence{
+
+    private final MappedByteBuffer bytes;
+    private final Charset charset;
+    private final boolean latin1;
+
+    private MappedSource(MappedByteBuffer bytes, Charset charset){
+        this.bytes = bytes;
+        this.charset = charset;
+        this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    public static boolean supports(Charset charset){
+        return charset.equals(StandardCharsets.UTF_8)
+            || charset.equals(StandardCharsets.ISO_8859_1)
+            || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    public static MappedSource map(Path path, Charset charset) throws IOException{
+        try (FileChannel channel = FileChannel.open(path)){
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), charset);
+        }
+    }
+
+    @Override
+    public int length(){
+        return bytes.limit();
+    }
+
+    // Non-ASCII bytes only ever end up in error messages
+    @Override
+    public char charAt(int index){
+        byte value = bytes.get(index);
+        if (value >= 0 || latin1) return (char) (value & 0xff);
+        return '\uFFFD';
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end){
+        byte[] lexeme = new byte[end - start];
+        bytes.get(start, lexeme);
+        return new String(lexeme, charset);
+    }
+
+    @Override
+    public String toString(){
+        return subSequence(0, length()).toString();
+    }
+}
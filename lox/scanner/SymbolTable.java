@@ -0,0 +1,54 @@
+package lox.scanner;
+
+// Intern table for identifier and keyword lexemes: every occurrence of a name shares one canonical String,
+// the one String.intern returns, so it is also the same object as that name written as a literal in the interpreter
+// Names are looked up straight from their range in the source, so a name seen before does not allocate a substring
+final class SymbolTable {
+
+    private String[] symbols = new String[256];
+    private int count = 0;
+
+    String intern(CharSequence source, int start, int end){
+        // Same hash as String.hashCode
+        int hash = 0;
+        for (int i = start; i < end; i++){
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int mask = symbols.length - 1;
+        int index = hash & mask;
+        while (symbols[index] != null){
+            if (matches(symbols[index], source, start, end)) return symbols[index];
+            index = (index + 1) & mask;
+        }
+
+        String symbol = source.subSequence(start, end).toString().intern();
+        symbols[index] = symbol;
+        count++;
+        if (count * 2 > symbols.length) grow();
+        return symbol;
+    }
+
+    private static boolean matches(String symbol, CharSequence source, int start, int end){
+        if (symbol.length() != end - start) return false;
+        for (int i = 0; i < symbol.length(); i++){
+            if (symbol.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private void grow(){
+        String[] old = symbols;
+        symbols = new String[old.length * 2];
+        int mask = symbols.length - 1;
+        for (String symbol : old){
+            if (symbol == null) continue;
+
+            int index = symbol.hashCode() & mask;
+            while (symbols[index] != null){
+                index = (index + 1) & mask;
+            }
+            symbols[index] = symbol;
+        }
+    }
+}
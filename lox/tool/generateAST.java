@@ -26,7 +26,8 @@ public class generateAST{
         exprClassesToFields.put(exprClasses[8], "Expression object:Token name");
         exprClassesToFields.put(exprClasses[9], "Expression object:Token name:Expression value");
         exprClassesToFields.put(exprClasses[10], "Token keyword");
-        exprClassesToFields.put(exprClasses[11], "Token keyword:Token method");
+        // receiver is the `this` the superclass method is bound to
+        exprClassesToFields.put(exprClasses[11], "Token keyword:Token method:ThisExpression receiver");
         exprClassesToFields.put(exprClasses[12], "ArrayList<Expression> elements");
         exprClassesToFields.put(exprClasses[13], "Token leftBracket:Expression arrayExpression: Expression index");
         exprClassesToFields.put(exprClasses[14], "Token leftBracket:Expression arrayExpression: Expression index: Expression value");
@@ -45,34 +46,159 @@ public class generateAST{
         stmtClassesToFields.put(stmtClasses[7], "Token keyword:Expression returnValue");
         stmtClassesToFields.put(stmtClasses[8], "Token name:VariableExpression superclass:ArrayList<FunctionStatement> methods:ArrayList<FunctionStatement> staticMethods");
 
+        // Fields filled in by the Resolver after parsing (not part of the constructor)
+        // depth stays -1 for global variables and for variables of enclosing functions, which are read from the upvalue at that index
+        // boxed locals are captured by a closure and hold the Upvalue they share with it
+        HashMap<String, String> exprClassesToResolvedFields = new HashMap<>();
+        exprClassesToResolvedFields.put(exprClasses[4], "int depth = -1:int slot:int upvalue = -1:boolean boxed");
+        exprClassesToResolvedFields.put(exprClasses[5], "int depth = -1:int slot:int upvalue = -1:boolean boxed");
+        exprClassesToResolvedFields.put(exprClasses[10], "int depth = -1:int slot:int upvalue = -1:boolean boxed");
+        // "super" is only used inside methods, so always from an upvalue
+        exprClassesToResolvedFields.put(exprClasses[11], "int upvalue = -1");
+        // Inline caches of the class lookups made at that property access or call
+        exprClassesToResolvedFields.put(exprClasses[7], "InlineCache initCache");
+        exprClassesToResolvedFields.put(exprClasses[8], "InlineCache methodCache");
+        exprClassesToResolvedFields.put(exprClasses[9], "InlineCache ownMethodCache");
+        HashMap<String, String> stmtClassesToResolvedFields = new HashMap<>();
+        // Slots of local declarations (-1 for globals), boxed when a closure captures them,
+        // and the size of the environment a block or a call runs in
+        // Blocks without an environment of their own keep their variables in the enclosing one
+        // Functions also get the slots of captured parameters (and `this`), and the variables their closures capture:
+        // a pair per upvalue, (depth, slot) of a variable of the enclosing function or (-1, index) of one of its upvalues
+        stmtClassesToResolvedFields.put(stmtClasses[2], "int slot = -1:boolean boxed");
+        stmtClassesToResolvedFields.put(stmtClasses[3], "int localCount:boolean ownEnvironment");
+        stmtClassesToResolvedFields.put(stmtClasses[6], "int slot = -1:boolean boxed:int localCount:int[] boxedSlots:int[] upvalues");
+        stmtClassesToResolvedFields.put(stmtClasses[8], "int slot = -1:boolean boxed");
+        // `return f(...)` in a function, whose call replaces the running one instead of nesting inside it
+        stmtClassesToResolvedFields.put(stmtClasses[7], "boolean tailCall");
+        // numeric is set on expressions that always produce a number (or a runtime error)
+        String exprResolvedFields = "boolean numeric";
+
         // Generate files Expression.java and Statement.java
         String packageName = "lox.lox";
-        defineAST(packageName, "lox/lox/Expression.java", "Expression", exprClasses, exprClassesToFields);
-        defineAST(packageName, "lox/lox/Statement.java", "Statement", stmtClasses, stmtClassesToFields);
+        defineAST(packageName, "lox/lox/Expression.java", "Expression", exprResolvedFields, exprClasses, exprClassesToFields, exprClassesToResolvedFields);
+        defineAST(packageName, "lox/lox/Statement.java", "Statement", null, stmtClasses, stmtClassesToFields, stmtClassesToResolvedFields);
 
     }
 
-    private static void defineAST(String packageName, String outputFilePath, String fileName, String [] classes, HashMap<String,String> classesToFields) throws IOException{
+    private static void defineAST(String packageName, String outputFilePath, String fileName, String resolvedFields, String [] classes, HashMap<String,String> classesToFields, HashMap<String,String> classesToResolvedFields) throws IOException{
 
         PrintWriter writer = new PrintWriter(outputFilePath);
 
         writer.printf("package %s;\n\n", packageName);
         writer.println("import lox.scanner.Token;");
+        writer.println("import java.io.IOException;");
         writer.println("import java.util.ArrayList;");
 
         writer.printf("\nabstract class %s {\n", fileName);
+        // Changes whenever the classes or their fields change, so serialized trees of another layout are not read
+        writer.printf("\tstatic final int LAYOUT = %d;\n", layoutOf(resolvedFields, classes, classesToFields, classesToResolvedFields));
+        if (resolvedFields != null){
+            for (String field : resolvedFields.split(":")){
+                writer.printf("\t%s;\n", field);
+            }
+        }
         writer.printf("\tabstract <R> R accept(%sVisitor<R> visitor);\n", fileName);
+        writer.println("\tabstract void write(ASTWriter out) throws IOException;");
+        defineReadMethod(writer, fileName, resolvedFields, classes, classesToFields, classesToResolvedFields);
         writer.println("}\n");
 
-        for (String currentClass : classes){
-           defineASTExtendedClass(writer, fileName, currentClass, classesToFields.get(currentClass));
+        for (int i=0; i < classes.length; i++){
+           String currentClass = classes[i];
+           defineASTExtendedClass(writer, fileName, i, resolvedFields, currentClass, classesToFields.get(currentClass), classesToResolvedFields.get(currentClass));
         }
         defineVisitorInterface(writer, fileName, classes);
 
         writer.close();
     }
 
-    private static void defineASTExtendedClass(PrintWriter writer, String fileName, String currentClass, String fields){
+    private static int layoutOf(String resolvedFields, String [] classes, HashMap<String,String> classesToFields, HashMap<String,String> classesToResolvedFields){
+        StringBuilder layout = new StringBuilder(String.valueOf(resolvedFields));
+        for (String currentClass : classes){
+            layout.append(currentClass).append(classesToFields.get(currentClass)).append(classesToResolvedFields.get(currentClass));
+        }
+        return layout.toString().hashCode();
+    }
+
+    // Type and name of a field declaration such as "int depth = -1"
+    private static String[] typeAndName(String field){
+        String[] values = field.split("=")[0].trim().split("\\s+");
+        return new String[]{values[0], values[values.length - 1]};
+    }
+
+    // Suffix of the ASTWriter/ASTReader methods for a field type
+    private static String codecFor(String type){
+        switch (type){
+            case "VariableExpression":
+            case "ThisExpression": return "Expression";
+            case "ArrayList<Expression>": return "Expressions";
+            case "ArrayList<Statement>":
+            case "ArrayList<FunctionStatement>": return "Statements";
+            case "ArrayList<Token>": return "Tokens";
+            case "Object": return "Literal";
+            case "int": return "Int";
+            case "int[]": return "Ints";
+            case "boolean": return "Boolean";
+            default: return type;
+        }
+    }
+
+    private static String readCall(String type){
+        String call = String.format("in.read%s()", codecFor(type));
+        if (type.equals("VariableExpression") || type.equals("ThisExpression")) call = String.format("(%s) %s", type, call);
+        return call;
+    }
+
+    // Reads a node written by the write method of the class with that tag
+    private static void defineReadMethod(PrintWriter writer, String fileName, String baseResolvedFields, String [] classes, HashMap<String,String> classesToFields, HashMap<String,String> classesToResolvedFields){
+        writer.printf("\n\tstatic %s read(ASTReader in, int tag) throws IOException{\n", fileName);
+        writer.println("\t\tswitch (tag) {");
+
+        for (int i=0; i < classes.length; i++){
+            String className = classes[i] + fileName;
+            writer.printf("\t\t\tcase %d: {\n", i);
+
+            String[] fieldsList = classesToFields.get(classes[i]).split(":");
+            writer.printf("\t\t\t\t%s node = new %s(", className, className);
+            for (int j=0; j < fieldsList.length; j++){
+                writer.print(readCall(typeAndName(fieldsList[j])[0]));
+                if (j == (fieldsList.length - 1)) break;
+                writer.print(", ");
+            }
+            writer.print(");\n");
+
+            for (String resolvedFields : new String[]{classesToResolvedFields.get(classes[i]), baseResolvedFields}){
+                if (resolvedFields == null) continue;
+                for (String field : resolvedFields.split(":")){
+                    String[] field_ = typeAndName(field);
+                    writer.printf("\t\t\t\tnode.%s = %s;\n", field_[1], readCall(field_[0]));
+                }
+            }
+            writer.println("\t\t\t\treturn node;");
+            writer.println("\t\t\t}");
+        }
+
+        writer.printf("\t\t\tdefault:\n\t\t\t\tthrow new IOException(\"Unknown %s tag: \" + tag);\n", fileName);
+        writer.println("\t\t}");
+        writer.println("\t}");
+    }
+
+    // Writes the tag of the class followed by its fields, its resolved fields and the resolved fields of the base class
+    private static void defineWriteMethod(PrintWriter writer, int tag, String fields, String resolvedFields, String baseResolvedFields){
+        writer.println("\n\t@Override");
+        writer.println("\tvoid write(ASTWriter out) throws IOException{");
+        writer.printf("\t\tout.writeTag(%d);\n", tag);
+        for (String fieldList : new String[]{fields, resolvedFields, baseResolvedFields}){
+            if (fieldList == null) continue;
+            for (String field : fieldList.split(":")){
+                String[] field_ = typeAndName(field);
+                writer.printf("\t\tout.write%s(%s);\n", codecFor(field_[0]), field_[1]);
+            }
+        }
+        writer.println("\t}");
+    }
+
+    private static void defineASTExtendedClass(PrintWriter writer, String fileName, int tag, String baseResolvedFields, String currentClass, String fields, String resolvedFields){
 
         writer.printf("class %s%s extends %s{\n", currentClass, fileName, fileName);
         String[] fieldsList = fields.split(":");
@@ -81,6 +207,12 @@ public class generateAST{
             writer.printf("\tfinal %s;\n", field);
         }
 
+        if (resolvedFields != null){
+            for (String field : resolvedFields.split(":")){
+                writer.printf("\t%s;\n", field);
+            }
+        }
+
         writer.printf("\n\t%s%s(", currentClass, fileName);
         for (int i=0; i < fieldsList.length; i++){
             writer.print(fieldsList[i]);
@@ -102,6 +234,7 @@ public class generateAST{
         writer.println("\n\t@Override");
         writer.printf("\t<R> R accept(%sVisitor<R> visit){\n", fileName);
         writer.printf("\t return visit.visit%s%s(this);}\n", currentClass, fileName);
+        defineWriteMethod(writer, tag, fields, resolvedFields, baseResolvedFields);
         writer.println("}\n");
     }
 
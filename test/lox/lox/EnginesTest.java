@@ -0,0 +1,104 @@
+package lox.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+// Runs Lox programs in a separate JVM on each engine
+// Every engine has to produce the interpreter's stdout and stderr, and the programs in test/programs also have to match
+// the .out (and .err, when they report errors) files next to them
+class EnginesTest {
+
+    private static final String[] ENGINES = {"--tree", "--vm"};
+    // Read by the programs calling `input`
+    private static final String STDIN = "Bob\n5\n";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @TestFactory
+    Stream<DynamicTest> sampleFiles() throws IOException{
+        return programs(Paths.get("sampleFiles")).map(file -> DynamicTest.dynamicTest(file.getFileName().toString(), () -> {
+            Result expected = run(file);
+            assertSameOnEveryEngine(file, expected);
+        }));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> programs() throws IOException{
+        return programs(Paths.get("test", "programs")).map(file -> DynamicTest.dynamicTest(file.getFileName().toString(), () -> {
+            Result expected = new Result(read(file, ".out"), read(file, ".err"));
+            assertEquals(expected, run(file), "interpreter");
+            assertSameOnEveryEngine(file, expected);
+        }));
+    }
+
+    private static void assertSameOnEveryEngine(Path file, Result expected) throws Exception{
+        for (String engine : ENGINES){
+            assertEquals(expected, run(file, engine), engine);
+        }
+    }
+
+    private static Stream<Path> programs(Path directory) throws IOException{
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)){
+            entries.filter(path -> path.toString().endsWith(".lox")).sorted().forEach(files::add);
+        }
+        return files.stream();
+    }
+
+    // Contents of the file next to the program with the extension instead of .lox, empty if there is none
+    private static String read(Path file, String extension) throws IOException{
+        String name = file.getFileName().toString();
+        Path expected = file.resolveSibling(name.substring(0, name.length() - ".lox".length()) + extension);
+        return Files.exists(expected) ? Files.readString(expected) : "";
+    }
+
+    private static Result run(Path file, String... flags) throws Exception{
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("lox.lox.Lox");
+        command.addAll(List.of(flags));
+        command.add(file.toString());
+
+        Process process = new ProcessBuilder(command).start();
+        process.getOutputStream().write(STDIN.getBytes(StandardCharsets.UTF_8));
+        process.getOutputStream().close();
+
+        // stderr is drained on its own thread so neither stream can fill up and block the program
+        StringBuilder err = new StringBuilder();
+        Thread errReader = new Thread(() -> err.append(readAll(process.getErrorStream())));
+        errReader.start();
+        String out = readAll(process.getInputStream());
+        errReader.join();
+
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+            process.destroyForcibly();
+            throw new AssertionError(file + " did not finish in " + TIMEOUT_SECONDS + "s");
+        }
+        return new Result(out, err.toString());
+    }
+
+    private static String readAll(InputStream stream){
+        try {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private record Result(String stdout, String stderr){
+    }
+}